@@ -0,0 +1,417 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/*
+ * ExecutorService that runs tasks by the AG policy of AGScheduler.
+ * A task is a SteppedTask: every call to step() is one unit of work, the
+ * live counterpart of one tick. After each step the worker applies the AG
+ * rules exactly where the simulation does:
+ *   quantum used up    quantum += 2, back to the end of the queue
+ *   25% of quantum     a waiting task of lower priority value takes over,
+ *                      quantum += ceil(unused / 2)
+ *   50% of quantum     a waiting task with less remaining work takes over,
+ *                      quantum += unused
+ *   finished           quantum = 0
+ * Every change is recorded in the task's quantum history, starting with
+ * its initial quantum, as in Task.history. Plain Runnables and Callables
+ * are one-step tasks with the default priority and quantum.
+ *
+ * Waiting tasks are kept in lock-free ConcurrentLinkedQueues: one FIFO for
+ * dispatch, one per priority value and one per power-of-two class of
+ * remaining work, the last two with an occupancy bitmap. An entry is in
+ * all three and is claimed with one CAS, so whichever index finds it
+ * first takes it. The priority and remaining-work queues drop claimed
+ * entries when they come across them, and sweep a level once half of it
+ * is claimed. The FIFO does the same: workers drop the claimed entries
+ * they poll, and a takeover sweeps it once claimed entries pass half of
+ * it, so a poll skips at most about as many stale entries as there are
+ * live ones and a worker holding a permit always reaches an unclaimed
+ * entry. The shortest-job check compares against
+ * the first task of the lowest non-empty class, which is only guaranteed
+ * to be shorter than the running task, not the shortest of all. A
+ * Semaphore counts the unclaimed entries so idle workers block without a
+ * lock on the queues.
+ */
+public class AGExecutor extends AbstractExecutorService {
+
+    // One unit of work per call; returns true once the task is done
+    public interface SteppedTask {
+        boolean step() throws Exception;
+    }
+
+    private static final int LEVELS = 64;
+
+    public int defaultPriority = 5;
+    public int defaultQuantum = 4;
+
+    private final Thread[] workers;
+    private final CountDownLatch terminated;
+    private volatile boolean shutdown;
+
+    private final ConcurrentLinkedQueue<Entry> fifo = new ConcurrentLinkedQueue<>();
+    // Entries in the FIFO, and how many of them were claimed by a takeover
+    private final AtomicInteger fifoSize = new AtomicInteger();
+    private final AtomicInteger fifoStale = new AtomicInteger();
+    private final Level byPriority = new Level();
+    private final Level byRemaining = new Level();
+    // Unclaimed entries
+    private final Semaphore waiting = new Semaphore(0);
+    private final AtomicLong nextTicket = new AtomicLong();
+
+    public AGExecutor(int threads) {
+        workers = new Thread[threads];
+        terminated = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "ag-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /*
+     * Handle of a submitted task: completes when the task finishes and
+     * exposes its AG state. Cancelling it stops the task at its next step.
+     */
+    public static class Handle extends CompletableFuture<Void> {
+        final SteppedTask task;
+        final Runnable runnable;
+        public final int priority;
+        final int estimate;
+        volatile int quantum;
+        volatile int used;
+        private int[] history = new int[4];
+        private int historyLength;
+
+        Handle(SteppedTask task, Runnable runnable, int priority, int estimate, int quantum) {
+            this.task = task;
+            this.runnable = runnable;
+            this.priority = priority;
+            this.estimate = estimate;
+            this.quantum = quantum;
+            record(quantum);
+        }
+
+        public int quantum() {
+            return quantum;
+        }
+
+        // Estimated steps left, at least 1 until the task is done
+        public int remaining() {
+            return isDone() ? 0 : Math.max(1, estimate - used);
+        }
+
+        public synchronized List<Integer> quantumHistory() {
+            List<Integer> list = new ArrayList<>(historyLength);
+            for (int i = 0; i < historyLength; i++) list.add(history[i]);
+            return list;
+        }
+
+        synchronized void record(int q) {
+            if (historyLength == history.length) history = Arrays.copyOf(history, historyLength * 2);
+            history[historyLength++] = q;
+        }
+    }
+
+    // One stay in the waiting queues; a task put back gets a new entry
+    private static class Entry {
+        final Handle handle;
+        final long ticket;
+        final int remaining;
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        Entry(Handle handle, long ticket) {
+            this.handle = handle;
+            this.ticket = ticket;
+            this.remaining = handle.remaining();
+        }
+    }
+
+    /*
+     * Queues indexed by a small level with a bitmap of the levels that may
+     * hold entries. Claimed entries are dropped when seen at a queue's
+     * head, and a level is swept once it has gathered enough of them.
+     */
+    private static class Level {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final ConcurrentLinkedQueue<Entry>[] queues = new ConcurrentLinkedQueue[LEVELS];
+        // Entries per level, and how many of them are already claimed
+        final AtomicInteger[] size = new AtomicInteger[LEVELS];
+        final AtomicInteger[] stale = new AtomicInteger[LEVELS];
+        final AtomicLong occupied = new AtomicLong();
+
+        Level() {
+            for (int i = 0; i < LEVELS; i++) {
+                queues[i] = new ConcurrentLinkedQueue<>();
+                size[i] = new AtomicInteger();
+                stale[i] = new AtomicInteger();
+            }
+        }
+
+        void add(int level, Entry entry) {
+            size[level].incrementAndGet();
+            queues[level].offer(entry);
+            setBit(level);
+        }
+
+        // First unclaimed entry of the lowest non-empty level below limit, or null
+        Entry first(int limit) {
+            long bits = occupied.get() & (limit >= LEVELS ? -1L : (1L << limit) - 1);
+            while (bits != 0) {
+                int level = Long.numberOfTrailingZeros(bits);
+                Entry head = head(level);
+                if (head != null) return head;
+                bits &= bits - 1;
+            }
+            return null;
+        }
+
+        Entry head(int level) {
+            ConcurrentLinkedQueue<Entry> queue = queues[level];
+            Entry head;
+            while ((head = queue.peek()) != null && head.claimed.get()) {
+                if (queue.remove(head)) removed(level, 1);
+            }
+            if (head == null) {
+                // Clear, then look again so a concurrent add can't be missed
+                occupied.getAndUpdate(b -> b & ~(1L << level));
+                if (!queue.isEmpty()) setBit(level);
+            }
+            return head;
+        }
+
+        // Sweeps once half the level is claimed entries, so each sweep pays for itself
+        void claimed(int level, Entry entry) {
+            int claimed = stale[level].incrementAndGet();
+            if (claimed > 64 && claimed * 2 > size[level].get()) {
+                int removed = 0;
+                for (Iterator<Entry> it = queues[level].iterator(); it.hasNext(); ) {
+                    if (it.next().claimed.get()) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+                removed(level, removed);
+            }
+        }
+
+        private void removed(int level, int count) {
+            stale[level].addAndGet(-count);
+            size[level].addAndGet(-count);
+        }
+
+        private void setBit(int level) {
+            occupied.getAndUpdate(b -> b | (1L << level));
+        }
+    }
+
+    private static int priorityLevel(int priority) {
+        return Math.max(0, Math.min(LEVELS - 1, priority));
+    }
+
+    // Power-of-two class of an amount of remaining work
+    private static int remainingLevel(int remaining) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(1, remaining));
+    }
+
+    public Handle submit(SteppedTask task, int priority, int estimatedSteps, int quantum) {
+        return enqueueNew(new Handle(task, null, priority, estimatedSteps, quantum));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        enqueueNew(new Handle(null, command, defaultPriority, 1, defaultQuantum));
+    }
+
+    private Handle enqueueNew(Handle handle) {
+        if (shutdown) throw new RejectedExecutionException("Executor has been shut down");
+        enqueue(handle);
+        return handle;
+    }
+
+    private void enqueue(Handle handle) {
+        Entry entry = new Entry(handle, nextTicket.getAndIncrement());
+        fifoSize.incrementAndGet();
+        fifo.offer(entry);
+        byPriority.add(priorityLevel(handle.priority), entry);
+        byRemaining.add(remainingLevel(entry.remaining), entry);
+        waiting.release();
+    }
+
+    // Takes an entry found through an index; the caller's permit becomes its claim
+    private boolean claim(Entry entry) {
+        if (!entry.claimed.compareAndSet(false, true)) return false;
+        byPriority.claimed(priorityLevel(entry.handle.priority), entry);
+        byRemaining.claimed(remainingLevel(entry.remaining), entry);
+        return true;
+    }
+
+    // Claims a waiting entry if there is one and the predicate accepts it
+    private Handle takeOver(Level level, int limit, Predicate<Entry> accept) {
+        while (true) {
+            Entry entry = level.first(limit);
+            if (entry == null || !accept.test(entry)) return null;
+            if (!waiting.tryAcquire()) return null;
+            if (claim(entry)) {
+                claimedInFifo();
+                return entry.handle;
+            }
+            waiting.release();
+        }
+    }
+
+    // Sweeps the FIFO once half of it is entries taken over, as Level.claimed does
+    private void claimedInFifo() {
+        int claimed = fifoStale.incrementAndGet();
+        if (claimed > 64 && claimed * 2 > fifoSize.get()) {
+            int removed = 0;
+            for (Iterator<Entry> it = fifo.iterator(); it.hasNext(); ) {
+                if (it.next().claimed.get()) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            fifoStale.addAndGet(-removed);
+            fifoSize.addAndGet(-removed);
+        }
+    }
+
+    // Next FIFO entry; a caller that can't claim it drops it from fifoStale, as it was taken over
+    private Entry pollFifo() {
+        Entry entry = fifo.poll();
+        if (entry != null) fifoSize.decrementAndGet();
+        return entry;
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                if (shutdown && waiting.availablePermits() == 0) break;
+                try {
+                    if (!waiting.tryAcquire(shutdown ? 0 : 100, TimeUnit.MILLISECONDS)) continue;
+                } catch (InterruptedException e) {
+                    if (shutdown) break;
+                    continue;
+                }
+                Handle handle = null;
+                for (Entry entry; handle == null && (entry = pollFifo()) != null; ) {
+                    if (claim(entry)) handle = entry.handle;
+                    else fifoStale.decrementAndGet();
+                }
+                if (handle != null) run(handle);
+                else waiting.release();
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    private void run(Handle handle) {
+        int usage = 0;
+        while (true) {
+            if (handle.isDone()) return;
+            boolean finished;
+            try {
+                if (handle.runnable != null) {
+                    handle.runnable.run();
+                    finished = true;
+                } else {
+                    finished = handle.task.step();
+                }
+            } catch (Throwable t) {
+                handle.completeExceptionally(t);
+                return;
+            }
+            usage++;
+            handle.used++;
+
+            if (finished) {
+                handle.quantum = 0;
+                handle.record(0);
+                handle.complete(null);
+                return;
+            }
+
+            int q = handle.quantum;
+            int limit25 = (int) Math.ceil(q * 0.25);
+            int limit50 = limit25 * 2;
+
+            // Quantum end
+            if (usage == q) {
+                handle.quantum = q + 2;
+                handle.record(handle.quantum);
+                enqueue(handle);
+                return;
+            }
+
+            // 25% Quantum: Priority preemption
+            if (usage == limit25) {
+                int priority = handle.priority;
+                Handle next = takeOver(byPriority, priorityLevel(priority) + 1, e -> e.handle.priority < priority);
+                if (next != null) {
+                    handle.quantum = q + (int) Math.ceil((q - usage) / 2.0);
+                    handle.record(handle.quantum);
+                    enqueue(handle);
+                    handle = next;
+                    usage = 0;
+                    continue;
+                }
+            }
+
+            // 50% Quantum: Shortest Job preemption
+            if (usage == limit50) {
+                int remaining = handle.remaining();
+                Handle next = takeOver(byRemaining, remainingLevel(remaining) + 1, e -> e.remaining < remaining);
+                if (next != null) {
+                    handle.quantum = q + (q - usage);
+                    handle.record(handle.quantum);
+                    enqueue(handle);
+                    handle = next;
+                    usage = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    // Cancels waiting tasks; returns the Runnables among them that never started
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> neverRun = new ArrayList<>();
+        for (Entry entry; (entry = pollFifo()) != null; ) {
+            if (!waiting.tryAcquire()) break;
+            if (!claim(entry)) {
+                fifoStale.decrementAndGet();
+                waiting.release();
+                continue;
+            }
+            if (entry.handle.runnable != null && entry.handle.used == 0) neverRun.add(entry.handle.runnable);
+            entry.handle.cancel(false);
+        }
+        for (Thread worker : workers) worker.interrupt();
+        return neverRun;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+}
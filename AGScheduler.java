@@ -22,144 +22,180 @@ public class AGScheduler {
     // ===== Overall schedule result =====
     public static class AGScheduleResult {
         public List<String> executionOrder;
+        public Timeline timeline;
         public List<AGProcessResult> processResults;
         public double averageWaitingTime;
         public double averageTurnaroundTime;
+        public LatencyStats latency;
     }
 
     // ===== Scheduler =====
     public static AGScheduleResult runSchedule(List<Task> tasks) {
-        int timer = 0;
-        List<Task> waitingList = new ArrayList<>();
-        List<Task> completedTasks = new ArrayList<>();
-        List<String> executionOrder = new ArrayList<>();
-
-        Task currentJob = null;
-        int currentUsage = 0;
-
         tasks.sort(Comparator.comparingInt(t -> t.arrival));
         int totalTasks = tasks.size();
 
-        // Load tasks arriving at t=0
+        ProcessTable table = new ProcessTable(totalTasks);
         for (Task t : tasks)
-            if (t.arrival == 0) waitingList.add(t);
-
-        while (completedTasks.size() < totalTasks) {
-
-            // CPU idle case
-            if (currentJob == null) {
-                if (!waitingList.isEmpty()) {
-                    currentJob = waitingList.remove(0);
-                    executionOrder.add(currentJob.name);
-                    currentUsage = 0;
-                } else {
-                    timer++;
-                    checkNewArrivals(tasks, waitingList, timer);
-                    continue;
-                }
-            }
+            table.add(t.name, t.arrival, t.burst, t.priority, t.quantum);
+
+        RunResult run = runSchedule(table);
+
+        // Copy the final state back onto the tasks
+        for (int i = 0; i < totalTasks; i++) {
+            Task t = tasks.get(i);
+            t.remainingTime = 0;
+            t.finishTime = run.finishTime[i];
+            t.waitingTime = run.waitingTime[i];
+            t.quantum = 0;
+            List<Integer> history = run.quantumHistory.of(i);
+            t.history.addAll(history.subList(1, history.size()));
+        }
 
-            // Execute one tick
-            currentJob.remainingTime--;
-            currentUsage++;
-            timer++;
+        // Build result
+        AGScheduleResult result = new AGScheduleResult();
+        result.executionOrder = run.executionOrder;
+        result.timeline = run.timeline;
+        result.processResults = new ArrayList<>();
 
-            checkNewArrivals(tasks, waitingList, timer);
+        // By name, equal names in completion order
+        List<Task> completedTasks = new ArrayList<>(tasks);
+        completedTasks.sort(Comparator.comparing((Task t) -> t.name).thenComparingInt(t -> t.finishTime));
 
-            // Task finished
-            if (currentJob.remainingTime == 0) {
-                currentJob.finishTime = timer;
-                currentJob.waitingTime = currentJob.finishTime - currentJob.arrival - currentJob.burst;
-                currentJob.quantum = 0;
-                currentJob.history.add(0);
+        for (Task t : completedTasks)
+            result.processResults.add(new AGProcessResult(t));
 
-                completedTasks.add(currentJob);
-                currentJob = null;
-                currentUsage = 0;
-                continue;
-            }
+        result.averageWaitingTime = run.averageWaitingTime;
+        result.averageTurnaroundTime = run.averageTurnaroundTime;
+        result.latency = run.latency;
 
-            int q = currentJob.quantum;
-            int limit25 = (int) Math.ceil(q * 0.25);
-            int limit50 = limit25 * 2;
-
-            // Quantum end
-            if (currentUsage == q) {
-                currentJob.quantum += 2;
-                currentJob.history.add(currentJob.quantum);
-                waitingList.add(currentJob);
-                currentJob = null;
-                continue;
-            }
+        return result;
+    }
+
+    public static RunResult runSchedule(ProcessView table) {
+        return ResultCache.cached("ag", table, new int[0], () -> runSchedule(table, null));
+    }
 
-            // 25% Quantum: Priority preemption
-            if (currentUsage == limit25) {
-                Task bestPriority = findBestPriority(waitingList);
-                if (bestPriority != null && bestPriority.priority < currentJob.priority) {
-                    int unused = q - currentUsage;
-                    currentJob.quantum += (int) Math.ceil(unused / 2.0);
-                    currentJob.history.add(currentJob.quantum);
-
-                    waitingList.add(currentJob);
-                    waitingList.remove(bestPriority);
-                    currentJob = bestPriority;
-                    executionOrder.add(currentJob.name);
-                    currentUsage = 0;
-                }
+    // Never cached, since the detector has to see the run
+    public static RunResult runSchedule(ProcessView table, StarvationDetector starvation) {
+        int totalTasks = table.size();
+        int[] rows = table.arrivalOrder();
+        int[] finish = new int[totalTasks];
+        QuantumHistory history = new QuantumHistory(totalTasks);
+        Timeline timeline = new Timeline(table);
+
+        // Ids handed out by the online engine follow submission order, i.e. positions in rows
+        OnlineAGScheduler engine = new OnlineAGScheduler(new SchedulerListener() {
+            @Override
+            public void dispatched(int id, int start, int end) {
+                timeline.open(rows[id], start);
+                timeline.extend(end);
             }
 
-            // 50% Quantum: Shortest Job preemption
-            if (currentUsage == limit50) {
-                Task bestSJF = findShortestJob(waitingList);
-                if (bestSJF != null && bestSJF.remainingTime < currentJob.remainingTime) {
-                    int unused = q - currentUsage;
-                    currentJob.quantum += unused;
-                    currentJob.history.add(currentJob.quantum);
-
-                    waitingList.add(currentJob);
-                    waitingList.remove(bestSJF);
-                    currentJob = bestSJF;
-                    executionOrder.add(currentJob.name);
-                    currentUsage = 0;
-                }
+            @Override
+            public void completed(int id, int arrival, int burst, int finishTime, int[] quantumHistory) {
+                finish[rows[id]] = finishTime;
+                for (int q : quantumHistory)
+                    history.append(rows[id], q);
             }
+        });
+        engine.starvation = starvation;
+        for (int row : rows)
+            engine.submit(table.name(row), table.arrival(row), table.burst(row), table.priority(row), table.quantum(row));
+        engine.finish();
+
+        RunResult result = new RunResult(table, timeline, finish);
+        result.quantumHistory = history;
+        result.metrics = engine.metrics;
+        result.latency = engine.latency;
+        return result;
+    }
+
+    // ===== Helpers =====
+
+    /*
+     * Waiting tasks indexed three ways at once: FIFO order for dispatch,
+     * lowest priority for the 25% check and shortest remaining time for the
+     * 50% check. Ties in the last two fall back to FIFO order, matching a
+     * scan of the waiting list from the front.
+     */
+    static class WaitingQueue {
+        private long[] enqueued = new long[16];
+        private int[] priority = new int[16];
+        private int[] remaining = new int[16];
+        private final IndexedMinHeap fifo;
+        private final IndexedMinHeap byPriority;
+        private final IndexedMinHeap byRemaining;
+        private long nextTicket;
+
+        WaitingQueue() {
+            fifo = new IndexedMinHeap(16, (a, b) -> Long.compare(enqueued[a], enqueued[b]));
+            byPriority = new IndexedMinHeap(16, (a, b) -> priority[a] != priority[b]
+                    ? Integer.compare(priority[a], priority[b])
+                    : Long.compare(enqueued[a], enqueued[b]));
+            byRemaining = new IndexedMinHeap(16, (a, b) -> remaining[a] != remaining[b]
+                    ? Integer.compare(remaining[a], remaining[b])
+                    : Long.compare(enqueued[a], enqueued[b]));
         }
 
-        // Build result
-        AGScheduleResult result = new AGScheduleResult();
-        result.executionOrder = executionOrder;
-        result.processResults = new ArrayList<>();
+        void copyFrom(WaitingQueue other) {
+            enqueued = other.enqueued.clone();
+            priority = other.priority.clone();
+            remaining = other.remaining.clone();
+            nextTicket = other.nextTicket;
+            fifo.copyFrom(other.fifo);
+            byPriority.copyFrom(other.byPriority);
+            byRemaining.copyFrom(other.byRemaining);
+        }
 
-        double totalWait = 0;
-        double totalTurn = 0;
+        boolean isEmpty() {
+            return fifo.isEmpty();
+        }
 
-        completedTasks.sort(Comparator.comparing(t -> t.name));
+        int size() {
+            return fifo.size();
+        }
 
-        for (Task t : completedTasks) {
-            AGProcessResult pr = new AGProcessResult(t);
-            result.processResults.add(pr);
-            totalWait += pr.waitingTime;
-            totalTurn += pr.turnaroundTime;
+        // Remaining time only changes while a task runs, so a snapshot taken here stays valid
+        void add(int id, int taskPriority, int remainingTime) {
+            ensureCapacity(id + 1);
+            enqueued[id] = nextTicket++;
+            priority[id] = taskPriority;
+            remaining[id] = remainingTime;
+            fifo.add(id);
+            byPriority.add(id);
+            byRemaining.add(id);
         }
 
-        result.averageWaitingTime = totalWait / totalTasks;
-        result.averageTurnaroundTime = totalTurn / totalTasks;
+        void remove(int id) {
+            fifo.remove(id);
+            byPriority.remove(id);
+            byRemaining.remove(id);
+        }
 
-        return result;
-    }
+        int pollFirst() {
+            int id = fifo.peek();
+            remove(id);
+            return id;
+        }
 
-    // ===== Helpers =====
-    private static void checkNewArrivals(List<Task> all, List<Task> queue, int time) {
-        for (Task t : all)
-            if (t.arrival == time) queue.add(t);
-    }
+        int bestPriority() {
+            return byPriority.peek();
+        }
 
-    private static Task findBestPriority(List<Task> queue) {
-        return queue.stream().min(Comparator.comparingInt(t -> t.priority)).orElse(null);
-    }
+        int shortestJob() {
+            return byRemaining.peek();
+        }
 
-    private static Task findShortestJob(List<Task> queue) {
-        return queue.stream().min(Comparator.comparingInt(t -> t.remainingTime)).orElse(null);
+        private void ensureCapacity(int capacity) {
+            if (capacity <= enqueued.length) return;
+            int grown = Math.max(capacity, enqueued.length * 2);
+            enqueued = Arrays.copyOf(enqueued, grown);
+            priority = Arrays.copyOf(priority, grown);
+            remaining = Arrays.copyOf(remaining, grown);
+            fifo.ensureCapacity(grown);
+            byPriority.ensureCapacity(grown);
+            byRemaining.ensureCapacity(grown);
+        }
     }
 
 
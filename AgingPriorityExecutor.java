@@ -0,0 +1,306 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Thread pool that runs queued work by PriorityScheduling rules: lower
+ * priority values first, the effective priority improving by one level
+ * per agingInterval of waiting (Process.effectivePriority, never below 1),
+ * ties broken by arrival and then by name. Running tasks are not
+ * preempted; priorities only decide which waiting task a free thread
+ * takes next.
+ *
+ * Usage:
+ *   AgingPriorityExecutor pool = new AgingPriorityExecutor(8, 50, TimeUnit.MILLISECONDS);
+ *   pool.submit(() -> handleRequest(), 2, "interactive");
+ */
+public class AgingPriorityExecutor extends ThreadPoolExecutor {
+
+    public int defaultPriority = 5;
+
+    public AgingPriorityExecutor(int threads, long agingInterval, TimeUnit unit) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, new AgingPriorityQueue(agingInterval, unit));
+    }
+
+    public <T> Future<T> submit(Callable<T> task, int priority, String name) {
+        PrioritizedTask<T> future = new PrioritizedTask<>(task, priority, name);
+        execute(future);
+        return future;
+    }
+
+    public Future<?> submit(Runnable task, int priority, String name) {
+        PrioritizedTask<Object> future = new PrioritizedTask<>(Executors.callable(task), priority, name);
+        execute(future);
+        return future;
+    }
+
+    // Plain Runnables get the default priority
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command instanceof PrioritizedTask ? command
+                : new PrioritizedTask<>(Executors.callable(command), defaultPriority, ""));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PrioritizedTask<>(callable, defaultPriority, "");
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PrioritizedTask<>(Executors.callable(runnable, value), defaultPriority, "");
+    }
+
+    // A queued task with its base priority, 0 to 63, and tie-break name
+    public static class PrioritizedTask<T> extends FutureTask<T> {
+        public final int priority;
+        public final String name;
+
+        public PrioritizedTask(Callable<T> callable, int priority, String name) {
+            super(callable);
+            if (priority < 0 || priority >= AgingPriorityQueue.LEVELS) {
+                throw new IllegalArgumentException("Priority must be between 0 and "
+                        + (AgingPriorityQueue.LEVELS - 1) + ", got " + priority);
+            }
+            this.priority = priority;
+            this.name = name;
+        }
+    }
+}
+
+/*
+ * Work queue behind AgingPriorityExecutor.
+ * There is one lock-free skip list per base priority, ordered by arrival
+ * and then name, and a bitmap of the levels that hold tasks. Aging is
+ * lazy: nothing is rescanned as time passes. Within a level every task
+ * has the same base priority, so the earliest arrival also has the best
+ * effective priority, and the head of the level is its best task. Taking
+ * a task therefore only compares the heads of the occupied levels, which
+ * is at most 64 and usually a handful. With several threads taking at
+ * once, each still gets the head of the level it chose, but the choice
+ * may be a moment out of date.
+ *
+ * PrioritizedTask only accepts base priorities 0 to 63, one level each.
+ */
+class AgingPriorityQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    static final int LEVELS = 64;
+
+    // Within a level: arrival, then name, then submission order
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong(e -> e.arrival)
+            .thenComparing(e -> e.name)
+            .thenComparingLong(e -> e.sequence);
+
+    private final int agingInterval;
+    private final TimeUnit unit;
+    private final long start = System.nanoTime();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentSkipListSet<Entry>[] levels = new ConcurrentSkipListSet[LEVELS];
+    private final AtomicLong occupied = new AtomicLong();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicInteger size = new AtomicInteger();
+
+    private static class Entry {
+        final Runnable task;
+        final int priority;
+        final String name;
+        final long arrival;
+        final long sequence;
+
+        Entry(Runnable task, int priority, String name, long arrival, long sequence) {
+            this.task = task;
+            this.priority = priority;
+            this.name = name;
+            this.arrival = arrival;
+            this.sequence = sequence;
+        }
+    }
+
+    AgingPriorityQueue(long agingInterval, TimeUnit unit) {
+        this.agingInterval = (int) Math.min(Integer.MAX_VALUE, agingInterval);
+        this.unit = unit;
+        for (int i = 0; i < LEVELS; i++) levels[i] = new ConcurrentSkipListSet<>(ORDER);
+    }
+
+    // Time since the queue was created, in aging units
+    private long now() {
+        return unit.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        int priority = 5;
+        String name = "";
+        if (task instanceof AgingPriorityExecutor.PrioritizedTask) {
+            priority = ((AgingPriorityExecutor.PrioritizedTask<?>) task).priority;
+            name = ((AgingPriorityExecutor.PrioritizedTask<?>) task).name;
+        }
+        int level = priority;
+        levels[level].add(new Entry(task, priority, name, now(), nextSequence.getAndIncrement()));
+        occupied.getAndUpdate(b -> b | (1L << level));
+        size.incrementAndGet();
+        available.release();
+        return true;
+    }
+
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        available.acquire();
+        return removeBest();
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return available.tryAcquire(timeout, unit) ? removeBest() : null;
+    }
+
+    @Override
+    public Runnable poll() {
+        return available.tryAcquire() ? removeBest() : null;
+    }
+
+    @Override
+    public Runnable peek() {
+        int level = bestLevel();
+        Entry head = level < 0 ? null : head(level);
+        return head == null ? null : head.task;
+    }
+
+    // First entry of a level, or null; unlike first() this doesn't throw when a take empties it
+    private Entry head(int level) {
+        Iterator<Entry> it = levels[level].iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /*
+     * Called holding a permit, so some level has an entry for us. A level
+     * can look empty for a moment while an offer is setting its bit or a
+     * take is clearing it; then yield to them and look again.
+     */
+    private Runnable removeBest() {
+        while (true) {
+            int level = bestLevel();
+            if (level < 0) {
+                Thread.yield();
+                continue;
+            }
+            Entry entry = levels[level].pollFirst();
+            if (entry != null) {
+                size.decrementAndGet();
+                return entry.task;
+            }
+        }
+    }
+
+    // Level whose head comes first by effective priority, arrival and name; -1 if all are empty
+    private int bestLevel() {
+        long time = now();
+        int best = -1;
+        Entry bestEntry = null;
+        int bestPriority = 0;
+        long bits = occupied.get();
+        while (bits != 0) {
+            int level = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            Entry head = head(level);
+            if (head == null) {
+                // Clear, then look again so a concurrent offer can't be missed
+                occupied.getAndUpdate(b -> b & ~(1L << level));
+                if (levels[level].isEmpty()) continue;
+                occupied.getAndUpdate(b -> b | (1L << level));
+                head = head(level);
+                if (head == null) continue;
+            }
+            int waited = (int) Math.min(Integer.MAX_VALUE, time - head.arrival);
+            int effective = Process.effectivePriority(head.priority, waited, agingInterval);
+            if (bestEntry == null || effective < bestPriority
+                    || (effective == bestPriority && (head.arrival < bestEntry.arrival
+                    || (head.arrival == bestEntry.arrival && head.name.compareTo(bestEntry.name) < 0)))) {
+                best = level;
+                bestEntry = head;
+                bestPriority = effective;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        for (ConcurrentSkipListSet<Entry> level : levels) {
+            for (Entry entry : level) {
+                if (entry.task == task && available.tryAcquire()) {
+                    if (level.remove(entry)) {
+                        size.decrementAndGet();
+                        return true;
+                    }
+                    available.release();
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target, int maxElements) {
+        int count = 0;
+        Runnable task;
+        while (count < maxElements && (task = poll()) != null) {
+            target.add(task);
+            count++;
+        }
+        return count;
+    }
+
+    // Snapshot in level order; remove() goes through the queue
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        for (ConcurrentSkipListSet<Entry> level : levels) {
+            for (Entry entry : level) snapshot.add(entry.task);
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            Runnable last;
+
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            public Runnable next() {
+                return last = it.next();
+            }
+
+            public void remove() {
+                AgingPriorityQueue.this.remove(last);
+            }
+        };
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/*
+ * Ready queue for PriorityScheduling with lazy aging.
+ * Instead of adding wait time to every queued process, a global wait epoch
+ * is advanced and each process remembers the epoch it last settled at.
+ * Each process sits in a bucket for its effective priority, and the bucket
+ * is only changed when its accumulated wait crosses the next agingInterval
+ * threshold. Processes are identified by slot ids, which may be reused.
+ */
+class AgingReadyQueue {
+    private final int agingInterval;
+    private int[] priority = new int[16];
+    private int[] arrival = new int[16];
+    private String[] name = new String[16];
+    private long[] order = new long[16];
+
+    private int[] cumulativeWait = new int[16];
+    private int[] waitStamp = new int[16];
+    private int[] bucket = new int[16];
+    private int[] nextAgingEpoch = new int[16];
+    private int epoch;
+
+    // bucket, then arrival, then name, then submission order
+    private final IndexedMinHeap ready;
+    // processes ordered by the epoch at which their effective priority may change
+    private final IndexedMinHeap agingEvents;
+
+    AgingReadyQueue(int agingInterval) {
+        this.agingInterval = agingInterval;
+        ready = new IndexedMinHeap(16, (a, b) -> {
+            if (bucket[a] != bucket[b]) return Integer.compare(bucket[a], bucket[b]);
+            if (arrival[a] != arrival[b]) return Integer.compare(arrival[a], arrival[b]);
+            int byName = name[a].compareTo(name[b]);
+            if (byName != 0) return byName;
+            return Long.compare(order[a], order[b]);
+        });
+        agingEvents = new IndexedMinHeap(16, (a, b) -> Integer.compare(nextAgingEpoch[a], nextAgingEpoch[b]));
+    }
+
+    // Takes on the contents and aging state of another queue with the same aging interval
+    void copyFrom(AgingReadyQueue other) {
+        priority = other.priority.clone();
+        arrival = other.arrival.clone();
+        name = other.name.clone();
+        order = other.order.clone();
+        cumulativeWait = other.cumulativeWait.clone();
+        waitStamp = other.waitStamp.clone();
+        bucket = other.bucket.clone();
+        nextAgingEpoch = other.nextAgingEpoch.clone();
+        epoch = other.epoch;
+        ready.copyFrom(other.ready);
+        agingEvents.copyFrom(other.agingEvents);
+    }
+
+    boolean isEmpty() {
+        return ready.isEmpty();
+    }
+
+    int size() {
+        return ready.size();
+    }
+
+    void add(int id, int processPriority, int arrivalTime, String processName, long submissionOrder) {
+        add(id, processPriority, arrivalTime, processName, submissionOrder, 0);
+    }
+
+    // Adds a process that has already waited for some time, e.g. one moved from another queue
+    void add(int id, int processPriority, int arrivalTime, String processName, long submissionOrder, int waited) {
+        ensureCapacity(id + 1);
+        priority[id] = processPriority;
+        arrival[id] = arrivalTime;
+        name[id] = processName;
+        order[id] = submissionOrder;
+        cumulativeWait[id] = waited;
+        waitStamp[id] = epoch;
+        bucket[id] = Process.effectivePriority(processPriority, waited, agingInterval);
+        ready.add(id);
+        scheduleAging(id);
+    }
+
+    void remove(int id) {
+        settle(id);
+        ready.remove(id);
+        agingEvents.remove(id);
+        name[id] = null;
+    }
+
+    // Every queued process except the exempt one waits for the given time
+    void chargeWait(int time, int exempt) {
+        epoch += time;
+        if (exempt >= 0 && ready.contains(exempt)) {
+            waitStamp[exempt] += time;
+            // Its aging is put off as well, so a long run doesn't keep waking it up
+            if (agingEvents.contains(exempt)) {
+                nextAgingEpoch[exempt] += time;
+                agingEvents.update(exempt);
+            }
+        }
+    }
+
+    // Wait that can be charged before some effective priority may change; Integer.MAX_VALUE if none can
+    int untilAging() {
+        if (agingEvents.isEmpty()) return Integer.MAX_VALUE;
+        return Math.max(0, nextAgingEpoch[agingEvents.peek()] - epoch);
+    }
+
+    // Total wait of a queued process so far
+    int waited(int id) {
+        settle(id);
+        return cumulativeWait[id];
+    }
+
+    // Effective priority of a queued process as of the last peek()
+    int effectivePriority(int id) {
+        return bucket[id];
+    }
+
+    // Lowest effective priority, ties broken by arrival time and then name; -1 if empty
+    int peek() {
+        while (!agingEvents.isEmpty() && nextAgingEpoch[agingEvents.peek()] <= epoch) {
+            int id = agingEvents.poll();
+            settle(id);
+            int effectivePriority = Process.effectivePriority(priority[id], cumulativeWait[id], agingInterval);
+            if (effectivePriority != bucket[id]) {
+                bucket[id] = effectivePriority;
+                ready.update(id);
+            }
+            scheduleAging(id);
+        }
+        return ready.peek();
+    }
+
+    private void settle(int id) {
+        cumulativeWait[id] += epoch - waitStamp[id];
+        waitStamp[id] = epoch;
+    }
+
+    private void scheduleAging(int id) {
+        if (agingInterval == 0) return;
+        int step = Math.abs(agingInterval);
+        int level = cumulativeWait[id] / step;
+        // Once clamped at priority 1, further waiting can't change anything
+        if (agingInterval > 0 && priority[id] - level <= 1) return;
+        nextAgingEpoch[id] = epoch + (level + 1) * step - cumulativeWait[id];
+        agingEvents.add(id);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= priority.length) return;
+        int grown = Math.max(capacity, priority.length * 2);
+        priority = Arrays.copyOf(priority, grown);
+        arrival = Arrays.copyOf(arrival, grown);
+        name = Arrays.copyOf(name, grown);
+        order = Arrays.copyOf(order, grown);
+        cumulativeWait = Arrays.copyOf(cumulativeWait, grown);
+        waitStamp = Arrays.copyOf(waitStamp, grown);
+        bucket = Arrays.copyOf(bucket, grown);
+        nextAgingEpoch = Arrays.copyOf(nextAgingEpoch, grown);
+        ready.ensureCapacity(grown);
+        agingEvents.ensureCapacity(grown);
+    }
+}
@@ -0,0 +1,348 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Searches scheduler settings for the best value of one metric under
+ * upper-bound constraints on others. Candidates are RR quanta, Priority
+ * aging intervals and AG initial quantum rules (a fixed quantum for every
+ * task, or a fraction of each task's burst), with SJF as a baseline.
+ *
+ * The search is successive halving: every candidate is first scored on a
+ * small window of the workload, the best 1/eta go on to a window eta
+ * times larger, and so on until the survivors run on the whole workload.
+ * Windows are contiguous runs of processes in arrival order with their
+ * arrival times shifted to start at 0, so they keep the load of the
+ * trace. Evaluations run on a ForkJoinPool and are memoized by candidate
+ * and window, so nothing is run twice, also across tune() calls with
+ * another metric or other limits.
+ *
+ * Metrics: avgWait, avgTat, p99Wait, p99Tat and switchesPerProcess (the
+ * context switch budget: dispatches per process).
+ *
+ * Usage: java AutoTuner <workload.json|.bin> [--metric avgWait] [--max p99Tat=500] [--max switchesPerProcess=3]
+ *            [--policies rr,sjf,priority,ag] [--threads n] [--eta 3] [--min-sample 2000] [--seed 1]
+ */
+public class AutoTuner {
+
+    public static class Candidate {
+        public final ParameterSweep.Config config;
+        // AG only: quantum given to every task, or 0
+        public final int agQuantum;
+        // AG only: quantum as a fraction of each task's burst, or 0
+        public final double agBurstFraction;
+
+        public Candidate(ParameterSweep.Config config, int agQuantum, double agBurstFraction) {
+            this.config = config;
+            this.agQuantum = agQuantum;
+            this.agBurstFraction = agBurstFraction;
+        }
+
+        // The workload as this candidate runs it
+        ProcessView apply(ProcessView table) {
+            if (agQuantum > 0 || agBurstFraction > 0) return new QuantumOverrideTable(table, agQuantum, agBurstFraction);
+            return table;
+        }
+
+        @Override
+        public String toString() {
+            switch (config.policy) {
+                case "rr":
+                    return "rr q=" + config.rrQuantum;
+                case "priority":
+                    return "priority aging=" + config.agingInterval;
+                case "ag":
+                    if (agQuantum > 0) return "ag quantum=" + agQuantum;
+                    if (agBurstFraction > 0) return "ag quantum=" + agBurstFraction + "*burst";
+                    return "ag quantum=workload";
+                default:
+                    return config.policy;
+            }
+        }
+    }
+
+    public static class Score {
+        public Candidate candidate;
+        public ParameterSweep.Outcome outcome;
+        public int processes;
+        public double objective;
+        public boolean feasible;
+    }
+
+    public static class Result {
+        public Score best;
+        // Last round, best first
+        public List<Score> finalists;
+        public int evaluations;
+        public int rounds;
+    }
+
+    public String metric = "avgWait";
+    public final Map<String, Double> limits = new LinkedHashMap<>();
+    public int eta = 3;
+    public int minSample = 2000;
+    public long seed = 1;
+
+    private final ForkJoinPool pool;
+    // Outcomes by candidate and window; one tuner is meant for one workload
+    private final Map<String, CompletableFuture<ParameterSweep.Outcome>> memo = new ConcurrentHashMap<>();
+
+    public AutoTuner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // The default search space for the given policies
+    public static List<Candidate> candidates(String[] policies, int contextSwitch, int maxQuantum, int maxAging) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String policy : policies) {
+            switch (policy) {
+                case "rr":
+                    for (int q = 1; q <= maxQuantum; q++)
+                        candidates.add(new Candidate(new ParameterSweep.Config("rr", q, contextSwitch, 0), 0, 0));
+                    break;
+                case "sjf":
+                    candidates.add(new Candidate(new ParameterSweep.Config("sjf", 0, contextSwitch, 0), 0, 0));
+                    break;
+                case "priority":
+                    for (int a = 1; a <= maxAging; a++)
+                        candidates.add(new Candidate(new ParameterSweep.Config("priority", 0, contextSwitch, a), 0, 0));
+                    break;
+                case "ag": {
+                    ParameterSweep.Config ag = new ParameterSweep.Config("ag", 0, 0, 0);
+                    candidates.add(new Candidate(ag, 0, 0));
+                    for (int q = 1; q <= maxQuantum; q++)
+                        candidates.add(new Candidate(ag, q, 0));
+                    for (double f : new double[]{0.1, 0.25, 0.5, 0.75, 1.0, 1.5})
+                        candidates.add(new Candidate(ag, 0, f));
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown policy " + policy);
+            }
+        }
+        return candidates;
+    }
+
+    public Result tune(ProcessView workload, List<Candidate> candidates) {
+        int n = workload.size();
+        // Halve until at most eta candidates are left for the whole workload
+        int rounds = 0;
+        for (long c = candidates.size(); c > eta; c = (c + eta - 1) / eta) rounds++;
+
+        List<Candidate> survivors = new ArrayList<>(candidates);
+        Result result = new Result();
+        List<Score> ranked = new ArrayList<>();
+
+        for (int round = 0; round <= rounds; round++) {
+            // Window size grows by eta each round and reaches the whole workload in the last
+            long size = n;
+            for (int r = round; r < rounds; r++) size /= eta;
+            size = Math.min(n, Math.max(minSample, size));
+            // The offset only depends on the size, so a repeated window is a memo hit
+            int from = size == n ? 0 : new Random(seed * 31 + size).nextInt((int) (n - size) + 1);
+            ProcessView window = size == n ? workload : window(workload, from, (int) size);
+
+            List<CompletableFuture<ParameterSweep.Outcome>> futures = new ArrayList<>();
+            for (Candidate candidate : survivors) {
+                futures.add(memo.computeIfAbsent(candidate.config + " " + candidate + "@" + from + "+" + size, key -> {
+                    result.evaluations++;
+                    return CompletableFuture.supplyAsync(
+                            () -> ParameterSweep.run(candidate.apply(window), candidate.config), pool);
+                }));
+            }
+            ranked = new ArrayList<>();
+            for (int i = 0; i < survivors.size(); i++) {
+                ranked.add(score(survivors.get(i), futures.get(i).join(), (int) size));
+            }
+            ranked.sort(Comparator.comparing((Score s) -> !s.feasible).thenComparingDouble(s -> s.objective));
+            result.rounds = round + 1;
+
+            int keep = Math.max(1, (survivors.size() + eta - 1) / eta);
+            survivors = new ArrayList<>();
+            for (Score s : ranked.subList(0, keep)) survivors.add(s.candidate);
+        }
+
+        result.finalists = ranked;
+        result.best = ranked.get(0);
+        return result;
+    }
+
+    // Scores an outcome against the current metric and limits
+    public Score score(Candidate candidate, ParameterSweep.Outcome outcome, int processes) {
+        Score score = new Score();
+        score.candidate = candidate;
+        score.outcome = outcome;
+        score.processes = processes;
+        score.objective = metric(outcome, metric, processes);
+        score.feasible = true;
+        for (Map.Entry<String, Double> limit : limits.entrySet()) {
+            if (metric(outcome, limit.getKey(), processes) > limit.getValue()) score.feasible = false;
+        }
+        return score;
+    }
+
+    public static double metric(ParameterSweep.Outcome outcome, String metric, int processes) {
+        switch (metric) {
+            case "avgWait":
+                return outcome.averageWaitingTime;
+            case "avgTat":
+                return outcome.averageTurnaroundTime;
+            case "p99Wait":
+                return outcome.p99WaitingTime;
+            case "p99Tat":
+                return outcome.p99TurnaroundTime;
+            case "switchesPerProcess":
+                return processes == 0 ? 0 : (double) outcome.dispatches / processes;
+            default:
+                throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+
+    // count processes starting at position from in arrival order, arrivals shifted to start at 0
+    static ProcessView window(ProcessView table, int from, int count) {
+        int[] rows = table.arrivalOrder();
+        ProcessTable window = new ProcessTable(count);
+        int base = count > 0 ? table.arrival(rows[from]) : 0;
+        for (int i = from; i < from + count; i++) {
+            int row = rows[i];
+            window.add(table.name(row), table.arrival(row) - base, table.burst(row), table.priority(row), table.quantum(row));
+        }
+        return window;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java AutoTuner <workload.json|.bin> [--metric m] [--max metric=value] "
+                    + "[--policies ..] [--threads n] [--eta n] [--min-sample n] [--seed n]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] policies = {"rr", "sjf", "priority", "ag"};
+        int maxQuantum = 32;
+        int maxAging = 50;
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> limits = new ArrayList<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--max")) limits.add(args[i + 1]);
+            else options.put(args[i], args[i + 1]);
+        }
+        if (options.containsKey("--threads")) threads = Integer.parseInt(options.remove("--threads"));
+        if (options.containsKey("--policies")) policies = options.remove("--policies").split(",");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        AutoTuner tuner = new AutoTuner(pool);
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            switch (option.getKey()) {
+                case "--metric":
+                    tuner.metric = option.getValue();
+                    break;
+                case "--eta":
+                    tuner.eta = Integer.parseInt(option.getValue());
+                    break;
+                case "--min-sample":
+                    tuner.minSample = Integer.parseInt(option.getValue());
+                    break;
+                case "--seed":
+                    tuner.seed = Long.parseLong(option.getValue());
+                    break;
+                default:
+                    System.err.println("Unknown option " + option.getKey());
+                    System.exit(1);
+            }
+        }
+        for (String limit : limits) {
+            String[] parts = limit.split("=");
+            metric(new ParameterSweep.Outcome(), parts[0], 1); // rejects unknown metrics early
+            tuner.limits.put(parts[0], Double.parseDouble(parts[1]));
+        }
+
+        Workload workload = WorkloadLoader.load(args[0]);
+        List<Candidate> candidates = candidates(policies, workload.contextSwitch, maxQuantum, maxAging);
+
+        long start = System.nanoTime();
+        Result result = tuner.tune(workload.processes, candidates);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d candidates, %d evaluations in %d rounds, %.2f s%n",
+                candidates.size(), result.evaluations, result.rounds, seconds);
+        System.out.printf("%-28s %10s %10s %10s %10s %10s %s%n",
+                "candidate", "avgWait", "avgTat", "p99Wait", "p99Tat", "sw/proc", "");
+        for (Score s : result.finalists) {
+            System.out.printf("%-28s %10.2f %10.2f %10.0f %10.0f %10.2f %s%n", s.candidate,
+                    s.outcome.averageWaitingTime, s.outcome.averageTurnaroundTime,
+                    s.outcome.p99WaitingTime, s.outcome.p99TurnaroundTime,
+                    metric(s.outcome, "switchesPerProcess", s.processes), s.feasible ? "" : "(violates limits)");
+        }
+        System.out.println("Best: " + result.best.candidate + (result.best.feasible ? "" : " (no candidate meets the limits)"));
+    }
+}
+
+/*
+ * View of a table with the AG quanta replaced: either one quantum for
+ * every process or a fraction of each burst. Everything else, including
+ * the cached arrival order, comes from the underlying table.
+ */
+class QuantumOverrideTable extends ProcessView {
+    private final ProcessView table;
+    private final int quantum;
+    private final double burstFraction;
+
+    QuantumOverrideTable(ProcessView table, int quantum, double burstFraction) {
+        this.table = table;
+        this.quantum = quantum;
+        this.burstFraction = burstFraction;
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public int arrival(int row) {
+        return table.arrival(row);
+    }
+
+    @Override
+    public int burst(int row) {
+        return table.burst(row);
+    }
+
+    @Override
+    public int priority(int row) {
+        return table.priority(row);
+    }
+
+    @Override
+    public int quantum(int row) {
+        if (quantum > 0) return quantum;
+        return Math.max(1, (int) Math.round(table.burst(row) * burstFraction));
+    }
+
+    @Override
+    public int nameId(int row) {
+        return table.nameId(row);
+    }
+
+    @Override
+    public String name(int row) {
+        return table.name(row);
+    }
+
+    @Override
+    public String nameOf(int id) {
+        return table.nameOf(id);
+    }
+
+    @Override
+    public int nameCount() {
+        return table.nameCount();
+    }
+
+    @Override
+    public int[] arrivalOrder() {
+        return table.arrivalOrder();
+    }
+}
@@ -0,0 +1,287 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+/*
+ * Throughput and allocation benchmark for the scheduling engines.
+ * Every (engine, distribution, size) cell is warmed up, then timed over
+ * several runs. Runs go through ResultCache.uncached, so the engines are
+ * timed rather than cache lookups. Inputs are rebuilt before each run, outside the timed
+ * section, because the list-based entry points sort and update them.
+ *
+ * Reported per cell:
+ *   proc/s     processes scheduled per second
+ *   ms/op      mean time of one schedule call
+ *   MB/op      bytes allocated by one schedule call
+ *   MB/s       allocation rate while scheduling
+ *   exp        growth exponent against the previous size, log(t2/t1) / log(n2/n1);
+ *              about 1 is linear, about 2 is a quadratic blow-up
+ *
+ * Usage: java Benchmark [--sizes 100,1000,...] [--engines rr,sjf,priority,ag,mlfq,cfs]
+ *                       [--dists uniform,bursty,heavy] [--warmup ms] [--measure ms]
+ *
+ * This is the quick way to look at one engine. The JMH module in
+ * benchmarks/ measures the same cells under JMH, with the gc profiler for
+ * allocation, and is what regressions are tracked with.
+ */
+public class Benchmark {
+
+    static final int CONTEXT_SWITCH = 1;
+    static final int RR_QUANTUM = 4;
+    static final int AGING_INTERVAL = 5;
+
+    public static void main(String[] args) {
+        int[] sizes = {100, 1000, 10000, 100000, 1000000};
+        String[] engines = {"rr", "sjf", "priority", "ag"};
+        String[] dists = {"uniform", "bursty", "heavy"};
+        long warmupMillis = 1000;
+        long measureMillis = 2000;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--engines":
+                    engines = args[i + 1].split(",");
+                    break;
+                case "--dists":
+                    dists = args[i + 1].split(",");
+                    break;
+                case "--warmup":
+                    warmupMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--measure":
+                    measureMillis = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        System.out.printf("%-9s %-8s %9s %14s %12s %10s %10s %6s%n",
+                "engine", "dist", "size", "proc/s", "ms/op", "MB/op", "MB/s", "exp");
+        for (String engine : engines) {
+            for (String dist : dists) {
+                double previousTime = -1;
+                int previousSize = 0;
+                for (int size : sizes) {
+                    ProcessView workload = workload(dist, size, 42);
+                    Measurement m = measure(engine, workload, warmupMillis, measureMillis);
+                    String growth = previousTime > 0
+                            ? String.format("%.2f", Math.log(m.nanosPerOp / previousTime) / Math.log((double) size / previousSize))
+                            : "-";
+                    System.out.printf("%-9s %-8s %9d %14.0f %12.3f %10.2f %10.1f %6s%n",
+                            engine, dist, size,
+                            size / (m.nanosPerOp / 1e9),
+                            m.nanosPerOp / 1e6,
+                            m.bytesPerOp / 1e6,
+                            m.bytesPerOp / 1e6 / (m.nanosPerOp / 1e9),
+                            growth);
+                    previousTime = m.nanosPerOp;
+                    previousSize = size;
+                }
+            }
+        }
+    }
+
+    /*
+     * One cell for the JMH module: each call copies the workload into fresh
+     * input and schedules it, bypassing the cache. The copy is part of the
+     * call, so prepareInput gives the copy alone to set against it. Only
+     * standard types cross over, since code in a named package can't name
+     * the classes here.
+     */
+    public static Supplier<Object> prepare(String engine, String dist, int size) {
+        Run run = run(engine, workload(dist, size, 42));
+        return () -> ResultCache.uncached(() -> {
+            run.setup();
+            return run.run();
+        });
+    }
+
+    // The input copy of prepare on its own
+    public static Supplier<Object> prepareInput(String engine, String dist, int size) {
+        Run run = run(engine, workload(dist, size, 42));
+        return () -> {
+            run.setup();
+            return run;
+        };
+    }
+
+    static class Measurement {
+        double nanosPerOp;
+        double bytesPerOp;
+    }
+
+    // One schedule call on fresh input; setup() runs untimed before run()
+    interface Run {
+        void setup();
+        Object run();
+    }
+
+    static Measurement measure(String engine, ProcessView workload, long warmupMillis, long measureMillis) {
+        Run run = run(engine, workload);
+
+        // Warm up until the time budget is spent, at least once
+        long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000L;
+        do {
+            run.setup();
+            blackhole(ResultCache.uncached(run::run));
+        } while (System.nanoTime() < warmupEnd);
+
+        long totalNanos = 0;
+        long totalBytes = 0;
+        int ops = 0;
+        while (ops < 3 || totalNanos < measureMillis * 1_000_000L) {
+            run.setup();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            blackhole(ResultCache.uncached(run::run));
+            totalNanos += System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytes;
+            ops++;
+        }
+
+        Measurement m = new Measurement();
+        m.nanosPerOp = (double) totalNanos / ops;
+        m.bytesPerOp = (double) totalBytes / ops;
+        return m;
+    }
+
+    // The public list-based entry points, fed from a copy of the workload
+    static Run run(String engine, ProcessView table) {
+        int n = table.size();
+        switch (engine) {
+            case "rr":
+                return new Run() {
+                    List<RoundRobinProcess> input;
+
+                    public void setup() {
+                        input = new ArrayList<>(n);
+                        for (int row = 0; row < n; row++)
+                            input.add(new RoundRobinProcess(table.name(row), table.arrival(row), table.burst(row), table.priority(row)));
+                    }
+
+                    public Object run() {
+                        return RoundRobinSchedule.schedule(input, RR_QUANTUM, CONTEXT_SWITCH);
+                    }
+                };
+            case "sjf":
+                return new Run() {
+                    List<ShortestJobFirstProcess.Process> input;
+
+                    public void setup() {
+                        input = new ArrayList<>(n);
+                        for (int row = 0; row < n; row++)
+                            input.add(new ShortestJobFirstProcess.Process(table.name(row), table.arrival(row), table.burst(row), table.priority(row)));
+                    }
+
+                    public Object run() {
+                        return ShortestJobFirstProcess.schedule(input, CONTEXT_SWITCH);
+                    }
+                };
+            case "priority":
+                return new Run() {
+                    ArrayList<Process> input;
+
+                    public void setup() {
+                        input = new ArrayList<>(n);
+                        for (int row = 0; row < n; row++)
+                            input.add(new Process(table.name(row), table.arrival(row), table.burst(row), table.priority(row)));
+                    }
+
+                    public Object run() {
+                        return new PriorityScheduling(CONTEXT_SWITCH, RR_QUANTUM, AGING_INTERVAL, input).exec();
+                    }
+                };
+            case "ag":
+                return new Run() {
+                    List<Task> input;
+
+                    public void setup() {
+                        input = new ArrayList<>(n);
+                        for (int row = 0; row < n; row++)
+                            input.add(new Task(table.name(row), table.arrival(row), table.burst(row), table.priority(row), table.quantum(row)));
+                    }
+
+                    public Object run() {
+                        return AGScheduler.runSchedule(input);
+                    }
+                };
+            case "mlfq":
+                // No list-based entry point; runs straight off the table
+                return new Run() {
+                    MLFQScheduler scheduler = new MLFQScheduler(MLFQScheduler.doublingQuanta(3, RR_QUANTUM),
+                            CONTEXT_SWITCH, 100 * RR_QUANTUM);
+
+                    public void setup() {
+                    }
+
+                    public Object run() {
+                        return scheduler.run(table);
+                    }
+                };
+            case "cfs":
+                return new Run() {
+                    CFSScheduler scheduler = new CFSScheduler(24, 3, CONTEXT_SWITCH);
+
+                    public void setup() {
+                    }
+
+                    public Object run() {
+                        return scheduler.run(table);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    /*
+     * Synthetic workloads, fixed by the seed:
+     *   uniform  evenly spread arrivals and bursts
+     *   bursty   batches arriving together, quiet gaps between them
+     *   heavy    Poisson arrivals, Pareto bursts (a few very long jobs)
+     */
+    static ProcessView workload(String dist, int n, long seed) {
+        WorkloadGenerator generator = new WorkloadGenerator(seed, n);
+        switch (dist) {
+            case "uniform":
+                generator.arrivals = "uniform";
+                generator.bursts = "uniform";
+                break;
+            case "bursty":
+                generator.arrivals = "bursty";
+                generator.bursts = "uniform";
+                break;
+            case "heavy":
+                generator.arrivals = "poisson";
+                generator.bursts = "pareto";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + dist);
+        }
+        return generator.table();
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    // Bytes allocated so far by this thread, 0 where the JVM can't tell
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    // Keeps results reachable so the JIT can't drop the work
+    static volatile Object sink;
+
+    private static void blackhole(Object result) {
+        sink = result;
+    }
+}
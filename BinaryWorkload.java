@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/*
+ * Fixed-width binary workload format, read through memory mapping.
+ *
+ * Layout (little endian):
+ *   header       64 bytes, see the HEADER_* offsets below
+ *   records      count x {arrival, burst, priority, quantum, nameId} ints
+ *   name index   (nameCount + 1) longs, offsets into the name data
+ *   name data    UTF-8 bytes of every distinct name
+ *
+ * Usage: java BinaryWorkload <input.json> <output.bin>
+ */
+class BinaryWorkload {
+
+    static final int MAGIC = 0x4C4B5257; // "WRKL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_INTS = 5;
+    static final int RECORD_SIZE = RECORD_INTS * 4;
+
+    private static final int HEADER_COUNT = 8;
+    private static final int HEADER_NAME_COUNT = 12;
+    private static final int HEADER_CONTEXT_SWITCH = 16;
+    private static final int HEADER_RR_QUANTUM = 20;
+    private static final int HEADER_AGING_INTERVAL = 24;
+    private static final int HEADER_RECORD_SIZE = 28;
+    private static final int HEADER_NAME_INDEX = 32;
+    private static final int HEADER_NAME_DATA = 40;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java BinaryWorkload <input.json> <output.bin>");
+            System.exit(1);
+        }
+        int count = convert(args[0], Paths.get(args[1]));
+        System.out.println("Wrote " + count + " processes to " + args[1]);
+    }
+
+    // True if the file starts with the binary workload magic number
+    static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                // keep reading until four bytes or end of file
+            }
+            return !head.hasRemaining() && head.getInt(0) == MAGIC;
+        }
+    }
+
+    /*
+     * Converts a JSON workload (test_*.json or AG_test*.json layout, or a
+     * bare process array) without holding its processes in memory: records
+     * are written as they are parsed, only the name dictionary is kept.
+     * Expected outputs are not carried over.
+     */
+    static int convert(String jsonPath, Path out) throws IOException {
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            RecordWriter writer = new RecordWriter(channel);
+            Workload settings = WorkloadLoader.read(jsonPath, writer::add);
+            writer.finish(settings);
+            return writer.count;
+        }
+    }
+
+    // Writes an in-memory workload
+    static void write(Workload workload, Path out) throws IOException {
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            RecordWriter writer = new RecordWriter(channel);
+            ProcessView table = workload.processes;
+            for (int row = 0; row < table.size(); row++) {
+                writer.add(table.name(row), table.arrival(row), table.burst(row),
+                        table.priority(row), table.quantum(row));
+            }
+            writer.finish(workload);
+        }
+    }
+
+    // Maps a binary workload; the processes are read straight from the mapping
+    static Workload open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) throw new IOException(path + " is not a binary workload");
+            if (header.getInt(4) != VERSION) throw new IOException("Unsupported workload version " + header.getInt(4));
+            if (header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) throw new IOException("Unexpected record size");
+
+            Workload workload = new Workload();
+            workload.name = path.getFileName().toString();
+            workload.contextSwitch = header.getInt(HEADER_CONTEXT_SWITCH);
+            workload.rrQuantum = header.getInt(HEADER_RR_QUANTUM);
+            workload.agingInterval = header.getInt(HEADER_AGING_INTERVAL);
+            workload.processes = new MappedProcessTable(channel,
+                    header.getInt(HEADER_COUNT), header.getInt(HEADER_NAME_COUNT),
+                    header.getLong(HEADER_NAME_INDEX), header.getLong(HEADER_NAME_DATA));
+            return workload;
+        }
+    }
+
+    // Streams records to the channel, then appends the name dictionary and header
+    private static class RecordWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIds = new HashMap<>();
+        private int count;
+
+        RecordWriter(FileChannel channel) throws IOException {
+            this.channel = channel;
+            channel.position(HEADER_SIZE);
+        }
+
+        void add(String name, int arrival, int burst, int priority, int quantum) {
+            Integer id = nameIds.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                nameIds.put(name, id);
+            }
+            try {
+                if (buffer.remaining() < RECORD_SIZE) flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.putInt(arrival).putInt(burst).putInt(priority).putInt(quantum).putInt(id);
+            count++;
+        }
+
+        void finish(Workload settings) throws IOException {
+            long nameIndexOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+            long nameDataOffset = nameIndexOffset + (names.size() + 1L) * 8;
+
+            long offset = 0;
+            for (String name : names) {
+                if (buffer.remaining() < 8) flush();
+                buffer.putLong(offset);
+                offset += name.getBytes(StandardCharsets.UTF_8).length;
+            }
+            if (buffer.remaining() < 8) flush();
+            buffer.putLong(offset);
+
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < bytes.length) flush();
+                if (bytes.length > buffer.capacity()) {
+                    channel.write(ByteBuffer.wrap(bytes));
+                } else {
+                    buffer.put(bytes);
+                }
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(HEADER_COUNT, count);
+            header.putInt(HEADER_NAME_COUNT, names.size());
+            header.putInt(HEADER_CONTEXT_SWITCH, settings.contextSwitch);
+            header.putInt(HEADER_RR_QUANTUM, settings.rrQuantum);
+            header.putInt(HEADER_AGING_INTERVAL, settings.agingInterval);
+            header.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+            header.putLong(HEADER_NAME_INDEX, nameIndexOffset);
+            header.putLong(HEADER_NAME_DATA, nameDataOffset);
+            channel.write(header, 0);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
+
+/*
+ * ProcessView whose columns live in a memory-mapped binary workload file.
+ * Records are split over several mappings because a single mapping is
+ * limited to 2 GiB. Each name is decoded and interned the first time it
+ * is asked for, then kept, so a name id always gives the same String.
+ */
+class MappedProcessTable extends ProcessView {
+    // 2^26 records of 20 bytes per mapping stays under the 2 GiB limit
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final int size;
+    private final int nameCount;
+    private final IntBuffer[] records;
+    private final LongBuffer nameIndex;
+    private final ByteBuffer nameData;
+    private final String[] names;
+
+    MappedProcessTable(FileChannel channel, int size, int nameCount,
+                       long nameIndexOffset, long nameDataOffset) throws IOException {
+        this.size = size;
+        this.nameCount = nameCount;
+        this.names = new String[nameCount];
+
+        int chunks = (int) (((long) size + CHUNK_MASK) >>> CHUNK_SHIFT);
+        records = new IntBuffer[chunks];
+        for (int c = 0; c < chunks; c++) {
+            long first = (long) c << CHUNK_SHIFT;
+            long rows = Math.min(1L << CHUNK_SHIFT, size - first);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+                    BinaryWorkload.HEADER_SIZE + first * BinaryWorkload.RECORD_SIZE,
+                    rows * BinaryWorkload.RECORD_SIZE);
+            records[c] = map.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        nameIndex = channel.map(FileChannel.MapMode.READ_ONLY, nameIndexOffset, (nameCount + 1L) * 8)
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        long dataSize = nameIndex.get(nameCount);
+        if (dataSize > Integer.MAX_VALUE) throw new IOException("Name dictionary larger than 2 GiB");
+        nameData = channel.map(FileChannel.MapMode.READ_ONLY, nameDataOffset, dataSize);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int field(int row, int field) {
+        return records[row >>> CHUNK_SHIFT].get((row & CHUNK_MASK) * BinaryWorkload.RECORD_INTS + field);
+    }
+
+    @Override
+    public int arrival(int row) {
+        return field(row, 0);
+    }
+
+    @Override
+    public int burst(int row) {
+        return field(row, 1);
+    }
+
+    @Override
+    public int priority(int row) {
+        return field(row, 2);
+    }
+
+    @Override
+    public int quantum(int row) {
+        return field(row, 3);
+    }
+
+    @Override
+    public int nameId(int row) {
+        return field(row, 4);
+    }
+
+    // Threads decoding the same name at once both intern it, so they still agree on the String
+    @Override
+    public String nameOf(int id) {
+        String name = names[id];
+        if (name != null) return name;
+        int from = (int) nameIndex.get(id);
+        byte[] bytes = new byte[(int) nameIndex.get(id + 1) - from];
+        ByteBuffer view = nameData.duplicate();
+        view.position(from);
+        view.get(bytes);
+        name = new String(bytes, StandardCharsets.UTF_8).intern();
+        names[id] = name;
+        return name;
+    }
+
+    @Override
+    public int nameCount() {
+        return nameCount;
+    }
+}
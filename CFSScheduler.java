@@ -0,0 +1,170 @@
+/*
+ * Completely-fair scheduling in the style of Linux CFS.
+ * Every process accumulates virtual runtime: time run scaled by
+ * NICE_0_WEIGHT / weight, where the weight comes from its priority
+ * through the kernel's nice-to-weight table (nice = priority -
+ * referencePriority, clamped to -20..19). The process with the least
+ * virtual runtime runs next, for a slice of targetLatency shared out by
+ * weight among the runnable processes, but never less than
+ * minGranularity. An arrival starts at the queue's minimum virtual
+ * runtime, so it neither jumps ahead of nor falls behind the others.
+ * A context switch costs contextSwitch, as in the SJF engine.
+ *
+ * Virtual runtimes only change when a slice ends, so the policy runs on
+ * the SimulationKernel, moving from one slice end or arrival to the next;
+ * a pick is one poll of an IndexedMinHeap on (virtual runtime, arrival
+ * order).
+ *
+ * Usage: java CFSScheduler <workload.json|.bin> [--latency n] [--granularity n] [--reference p]
+ */
+public class CFSScheduler {
+
+    static final int NICE_0_WEIGHT = 1024;
+
+    // sched_prio_to_weight, nice -20 to 19
+    static final int[] WEIGHTS = {
+            88761, 71755, 56483, 46273, 36291,
+            29154, 23254, 18705, 14949, 11916,
+            9548, 7620, 6100, 4904, 3906,
+            3121, 2501, 1991, 1586, 1277,
+            1024, 820, 655, 526, 423,
+            335, 272, 215, 172, 137,
+            110, 87, 70, 56, 45,
+            36, 29, 23, 18, 15,
+    };
+
+    // Virtual runtime carries 10 extra bits so small weights don't round to nothing
+    private static final int FRACTION_BITS = 10;
+
+    public int targetLatency;
+    public int minGranularity;
+    public int contextSwitch;
+    // Priority that maps to nice 0
+    public int referencePriority = 5;
+
+    public CFSScheduler(int targetLatency, int minGranularity, int contextSwitch) {
+        if (minGranularity < 1) throw new IllegalArgumentException("Minimum granularity must be positive");
+        this.targetLatency = targetLatency;
+        this.minGranularity = minGranularity;
+        this.contextSwitch = contextSwitch;
+    }
+
+    public int weight(int priority) {
+        long nice = Math.max(-20, Math.min(19, (long) priority - referencePriority));
+        return WEIGHTS[(int) nice + 20];
+    }
+
+    public RunResult run(ProcessView table) {
+        return ResultCache.cached("cfs", table, new int[]{targetLatency, minGranularity, contextSwitch, referencePriority},
+                () -> new SimulationKernel(table, contextSwitch).run(new Policy(), "cfs"));
+    }
+
+    private class Policy implements SchedulingPolicy {
+        private SimulationKernel kernel;
+        private int[] weight;
+        private long[] vruntime;
+        private IndexedMinHeap ready;
+        // Sum of the weights of the ready processes and the one running
+        private long readyWeight;
+        private long minVruntime;
+
+        public void start(SimulationKernel kernel) {
+            this.kernel = kernel;
+            int n = kernel.n;
+            weight = new int[n];
+            vruntime = new long[n];
+            for (int i = 0; i < n; i++) weight[i] = weight(kernel.priority(i));
+            long[] v = vruntime;
+            ready = new IndexedMinHeap(n, (a, b) -> v[a] != v[b] ? Long.compare(v[a], v[b]) : Integer.compare(a, b));
+        }
+
+        public void arrived(int p) {
+            vruntime[p] = minVruntime;
+            readyWeight += weight[p];
+            ready.add(p);
+        }
+
+        public int ready() {
+            return ready.size();
+        }
+
+        public int pick() {
+            return ready.poll();
+        }
+
+        // Share of the target latency by weight, among everything runnable now
+        public int slice(int p) {
+            long share = (long) targetLatency * weight[p] / readyWeight;
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(minGranularity, share));
+        }
+
+        public void ran(int p, int time) {
+            vruntime[p] += ((long) time * NICE_0_WEIGHT << FRACTION_BITS) / weight[p];
+            // The queue's minimum only moves forward
+            long lowest = ready.isEmpty() ? vruntime[p] : Math.min(vruntime[p], vruntime[ready.peek()]);
+            minVruntime = Math.max(minVruntime, lowest);
+        }
+
+        public void requeue(int p) {
+            ready.add(p);
+            if (kernel.metrics != null) kernel.metrics.quantumExpiries++;
+        }
+
+        public void completed(int p) {
+            readyWeight -= weight[p];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java CFSScheduler <workload.json|.bin> [--latency n] [--granularity n] [--reference p]");
+            System.exit(1);
+        }
+        Workload workload = WorkloadLoader.load(args[0]);
+        CFSScheduler cfs = new CFSScheduler(24, 3, workload.contextSwitch);
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--latency":
+                    cfs.targetLatency = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--granularity":
+                    cfs.minGranularity = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--reference":
+                    cfs.referencePriority = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        // Fair share against the slice-based and adaptive engines on the same trace
+        ProcessView table = workload.processes;
+        int quantum = Math.max(1, workload.rrQuantum);
+        System.out.printf("%-6s %10s %10s %10s %12s %10s %9s%n",
+                "policy", "avg wait", "p99 wait", "avg tat", "p99 response", "makespan", "seconds");
+        for (String policy : new String[]{"rr", "ag", "cfs"}) {
+            long start = System.nanoTime();
+            RunResult r;
+            switch (policy) {
+                case "rr":
+                    r = RoundRobinSchedule.schedule(table, quantum, workload.contextSwitch);
+                    break;
+                case "ag":
+                    r = AGScheduler.runSchedule(table);
+                    break;
+                default:
+                    r = cfs.run(table);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int makespan = 0;
+            for (int f : r.finishTime) makespan = Math.max(makespan, f);
+            System.out.printf("%-6s %10.2f %10d %10.2f %12d %10d %9.2f%n", policy, r.averageWaitingTime,
+                    r.latency.waiting.percentile(0.99), r.averageTurnaroundTime,
+                    r.latency.response.percentile(0.99), makespan, seconds);
+            System.out.print(PriorityClassStats.of(r));
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Checks the engines against golden test cases, many files at once.
+ * Each case file is loaded and run on a ForkJoinPool worker. A test file
+ * holds expected results per policy ("RR", "SJF", "Priority", "MLFQ",
+ * "CFS"); an AG test file holds them at the top level. A failing check is
+ * reported at the first dispatch that differs from the expected execution
+ * order, with its time, then the processes whose waiting time, turnaround
+ * time or quantum history differ, matched by name, then the averages.
+ * Passing checks print nothing, so a large suite comes down to a summary.
+ *
+ * Runs never come from the ResultCache: a cached run would hide the
+ * engine change being checked.
+ *
+ * Usage: java GoldenVerifier [file|directory ...] [--threads n] [--limit n]
+ * Directories are searched for *.json; the default is the current one.
+ * Exits with status 1 if any check fails.
+ */
+public class GoldenVerifier {
+
+    static final String[] POLICIES = {"RR", "SJF", "Priority", "MLFQ", "CFS"};
+
+    // Outcome of one policy on one case file
+    public static class Check {
+        public final String file;
+        public final String policy;
+        // Empty when the run matched
+        public final List<String> differences;
+
+        Check(String file, String policy, List<String> differences) {
+            this.file = file;
+            this.policy = policy;
+            this.differences = differences;
+        }
+
+        public boolean passed() {
+            return differences.isEmpty();
+        }
+    }
+
+    // Runs every case file on the pool; checks come back in file order
+    public static List<Check> verify(List<Path> files, int limit, ForkJoinPool pool) throws Exception {
+        List<List<Check>> perFile = pool.submit(() -> files.parallelStream()
+                .map(file -> verify(file, limit))
+                .collect(Collectors.toList())).get();
+        List<Check> checks = new ArrayList<>();
+        for (List<Check> c : perFile) checks.addAll(c);
+        return checks;
+    }
+
+    // Every policy the file has expected results for; a file that can't be loaded or run is one failed check
+    public static List<Check> verify(Path file, int limit) {
+        String name = file.toString();
+        List<Check> checks = new ArrayList<>();
+        Workload workload;
+        try {
+            workload = WorkloadLoader.load(name);
+        } catch (IOException | RuntimeException e) {
+            checks.add(new Check(name, "load", Collections.singletonList(e.toString())));
+            return checks;
+        }
+        JsonObject expectedOutput = workload.expectedOutput;
+        if (expectedOutput == null) return checks;
+
+        if (expectedOutput.has("executionOrder")) {
+            checks.add(check(name, "AG", workload, expectedOutput, limit));
+        }
+        for (String policy : POLICIES) {
+            if (expectedOutput.has(policy)) {
+                checks.add(check(name, policy, workload, expectedOutput.getAsJsonObject(policy), limit));
+            }
+        }
+        return checks;
+    }
+
+    private static Check check(String file, String policy, Workload workload, JsonObject expected, int limit) {
+        try {
+            return new Check(file, policy, compare(policy, expected, run(policy, workload, expected), limit));
+        } catch (RuntimeException e) {
+            return new Check(file, policy, Collections.singletonList(e.toString()));
+        }
+    }
+
+    /*
+     * Runs the policy with the case's settings. The expected MLFQ section
+     * may give "quanta" (one per level) and "boostInterval"; otherwise
+     * three levels doubling from the RR quantum, without boosts. The
+     * expected CFS section may give "targetLatency", "minGranularity" and
+     * "referencePriority"; otherwise 24, 3 and 5.
+     */
+    static RunResult run(String policy, Workload workload, JsonObject expected) {
+        switch (policy) {
+            case "RR":
+                return RoundRobinSchedule.schedule(workload.processes, workload.rrQuantum, workload.contextSwitch);
+            case "SJF":
+                return ShortestJobFirstProcess.schedule(workload.processes, workload.contextSwitch);
+            case "Priority":
+                return new PriorityScheduling(workload.contextSwitch, workload.rrQuantum, workload.agingInterval,
+                        workload.processes).run();
+            case "MLFQ": {
+                int[] quanta = MLFQScheduler.doublingQuanta(3, Math.max(1, workload.rrQuantum));
+                if (expected.has("quanta")) {
+                    JsonArray levels = expected.getAsJsonArray("quanta");
+                    quanta = new int[levels.size()];
+                    for (int i = 0; i < quanta.length; i++) quanta[i] = levels.get(i).getAsInt();
+                }
+                int boostInterval = expected.has("boostInterval") ? expected.get("boostInterval").getAsInt() : 0;
+                return new MLFQScheduler(quanta, workload.contextSwitch, boostInterval).run(workload.processes);
+            }
+            case "CFS": {
+                int targetLatency = expected.has("targetLatency") ? expected.get("targetLatency").getAsInt() : 24;
+                int minGranularity = expected.has("minGranularity") ? expected.get("minGranularity").getAsInt() : 3;
+                CFSScheduler scheduler = new CFSScheduler(targetLatency, minGranularity, workload.contextSwitch);
+                if (expected.has("referencePriority")) {
+                    scheduler.referencePriority = expected.get("referencePriority").getAsInt();
+                }
+                return scheduler.run(workload.processes);
+            }
+            case "AG":
+                return AGScheduler.runSchedule(workload.processes);
+            default:
+                throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+    }
+
+    /*
+     * Differences between the expected results and a run, at most limit
+     * processes of them; empty if they match. Averages are judged by
+     * Main.averageMatches, so both tools agree on the policy's tolerance.
+     */
+    static List<String> compare(String policy, JsonObject expected, RunResult actual, int limit) {
+        List<String> differences = new ArrayList<>();
+
+        // First dispatch that differs, if any
+        Timeline timeline = actual.timeline;
+        JsonArray order = expected.getAsJsonArray("executionOrder");
+        int common = Math.min(order.size(), timeline.size());
+        int i = 0;
+        while (i < common && order.get(i).getAsString().equals(actual.name(timeline.row(i)))) i++;
+        if (i < common) {
+            differences.add(String.format("dispatch #%d at t=%d: expected %s, got %s", i, timeline.start(i),
+                    order.get(i).getAsString(), actual.name(timeline.row(i))));
+        } else if (i < order.size()) {
+            differences.add(String.format("dispatch #%d: expected %s, run ended at t=%d", i,
+                    order.get(i).getAsString(), i == 0 ? 0 : timeline.end(i - 1)));
+        } else if (i < timeline.size()) {
+            differences.add(String.format("dispatch #%d at t=%d: got %s after the expected %d dispatches", i,
+                    timeline.start(i), actual.name(timeline.row(i)), order.size()));
+        }
+
+        // Per process, matched by name; the first row of a repeated name, as in Main
+        Map<String, Integer> rows = new HashMap<>();
+        for (int row = 0; row < actual.size(); row++) rows.putIfAbsent(actual.name(row), row);
+        int differing = 0;
+        for (JsonElement e : expected.getAsJsonArray("processResults")) {
+            JsonObject exp = e.getAsJsonObject();
+            String name = exp.get("name").getAsString();
+            Integer row = rows.get(name);
+            StringBuilder process = new StringBuilder();
+            if (row == null) {
+                process.append(" not in the run");
+            } else {
+                int waiting = exp.get("waitingTime").getAsInt();
+                int turnaround = exp.get("turnaroundTime").getAsInt();
+                if (waiting != actual.waitingTime[row]) {
+                    process.append(" waiting ").append(actual.waitingTime[row]).append(" (expected ").append(waiting).append(')');
+                }
+                if (turnaround != actual.turnaroundTime[row]) {
+                    process.append(" turnaround ").append(actual.turnaroundTime[row]).append(" (expected ").append(turnaround).append(')');
+                }
+                if (exp.has("quantumHistory") && actual.quantumHistory != null) {
+                    JsonArray history = exp.getAsJsonArray("quantumHistory");
+                    List<Integer> actualHistory = actual.quantumHistory.of(row);
+                    if (!Main.compareHistory(history, actualHistory)) {
+                        process.append(" quantum history ").append(actualHistory).append(" (expected ").append(history).append(')');
+                    }
+                }
+            }
+            if (process.length() == 0) continue;
+            if (differing++ < limit) differences.add(name + ":" + process);
+        }
+        if (differing > limit) differences.add("... and " + (differing - limit) + " more processes");
+
+        double waiting = expected.get("averageWaitingTime").getAsDouble();
+        double turnaround = expected.get("averageTurnaroundTime").getAsDouble();
+        if (!Main.averageMatches(policy, waiting, actual.averageWaitingTime)) {
+            differences.add(String.format("average waiting %.2f (expected %.2f)", actual.averageWaitingTime, waiting));
+        }
+        if (!Main.averageMatches(policy, turnaround, actual.averageTurnaroundTime)) {
+            differences.add(String.format("average turnaround %.2f (expected %.2f)", actual.averageTurnaroundTime, turnaround));
+        }
+        return differences;
+    }
+
+    // The given files, and every *.json under the given directories, in path order
+    static List<Path> caseFiles(List<String> roots) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String root : roots) {
+            Path path = Paths.get(root);
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".json")).sorted().forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> roots = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int limit = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--limit":
+                    limit = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    roots.add(args[i]);
+            }
+        }
+        if (roots.isEmpty()) roots.add(".");
+        ResultCache.shared = null;
+
+        long start = System.nanoTime();
+        List<Path> files = caseFiles(roots);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Check> checks = verify(files, limit, pool);
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int failed = 0;
+        for (Check check : checks) {
+            if (check.passed()) continue;
+            failed++;
+            System.out.println("FAIL " + check.file + " " + check.policy + ": " + check.differences.get(0));
+            for (String difference : check.differences.subList(1, check.differences.size())) {
+                System.out.println("     " + difference);
+            }
+        }
+        System.out.printf("%d files, %d checks: %d passed, %d failed in %.2f s on %d threads%n",
+                files.size(), checks.size(), checks.size() - failed, failed, seconds, threads);
+        if (failed > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+/*
+ * Binary min-heap over integer ids 0..capacity-1.
+ * Every id remembers its slot, so any id can be removed or re-sifted
+ * in O(log n) without scanning the heap. The id range can grow, so ids
+ * may also be recycled slots rather than a fixed numbering.
+ */
+class IndexedMinHeap {
+
+    // Ordering of two ids; negative when a should come out first
+    interface Order {
+        int compare(int a, int b);
+    }
+
+    private final Order order;
+    private int[] heap;
+    private int[] slot;
+    private int size;
+
+    public IndexedMinHeap(int capacity, Order order) {
+        this.order = order;
+        this.heap = new int[Math.max(1, capacity)];
+        this.slot = new int[capacity];
+        Arrays.fill(slot, -1);
+    }
+
+    // Makes room for ids up to capacity - 1
+    public void ensureCapacity(int capacity) {
+        if (capacity <= slot.length) return;
+        int grown = Math.max(capacity, slot.length * 2);
+        int old = slot.length;
+        slot = Arrays.copyOf(slot, grown);
+        Arrays.fill(slot, old, grown, -1);
+        heap = Arrays.copyOf(heap, grown);
+    }
+
+    // Takes on the ids and layout of other; this heap's order must rank ids the same way
+    public void copyFrom(IndexedMinHeap other) {
+        heap = other.heap.clone();
+        slot = other.slot.clone();
+        size = other.size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return slot[id] >= 0;
+    }
+
+    public void add(int id) {
+        heap[size] = id;
+        slot[id] = size;
+        siftUp(size++);
+    }
+
+    // Smallest id, or -1 if the heap is empty
+    public int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    public int poll() {
+        if (size == 0) return -1;
+        int top = heap[0];
+        remove(top);
+        return top;
+    }
+
+    public void remove(int id) {
+        int i = slot[id];
+        if (i < 0) return;
+        slot[id] = -1;
+        int last = heap[--size];
+        if (i == size) return;
+        heap[i] = last;
+        slot[last] = i;
+        siftUp(i);
+        siftDown(slot[last]);
+    }
+
+    // Restore heap order after the key of id changed
+    public void update(int id) {
+        int i = slot[id];
+        if (i < 0) return;
+        siftUp(i);
+        siftDown(slot[id]);
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (order.compare(id, heap[parent]) >= 0) break;
+            heap[i] = heap[parent];
+            slot[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        slot[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && order.compare(heap[right], heap[child]) < 0) child = right;
+            if (order.compare(id, heap[child]) <= 0) break;
+            heap[i] = heap[child];
+            slot[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        slot[id] = i;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * FIFO queue of int ids backed by a circular array.
+ * Grows by doubling when full, so enqueue never allocates per element.
+ */
+class IntRingQueue {
+    private int[] items;
+    private int head;
+    private int size;
+
+    public IntRingQueue(int capacity) {
+        items = new int[Integer.highestOneBit(Math.max(2, capacity) - 1) << 1];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(int id) {
+        if (size == items.length) grow();
+        items[(head + size) & (items.length - 1)] = id;
+        size++;
+    }
+
+    // Removes and returns the oldest id, or -1 if the queue is empty
+    public int poll() {
+        if (size == 0) return -1;
+        int id = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return id;
+    }
+
+    public int peek() {
+        return size == 0 ? -1 : items[head];
+    }
+
+    private void grow() {
+        int[] bigger = new int[items.length << 1];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = items[(head + i) & (items.length - 1)];
+        }
+        items = bigger;
+        head = 0;
+    }
+}
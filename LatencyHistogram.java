@@ -0,0 +1,139 @@
+/*
+ * Log-bucketed histogram of non-negative int times, in the style of
+ * HdrHistogram. Values below 2^precisionBits are counted exactly; above
+ * that every power-of-two range is split into 2^(precisionBits - 1)
+ * equal buckets, so a reported value is never more than 1 / 2^(precisionBits - 1)
+ * above the true one. The bucket array is sized for the whole int range
+ * up front, so memory stays the same however many values are recorded.
+ * Histograms of the same precision merge by adding counts.
+ */
+public class LatencyHistogram {
+
+    public static final int DEFAULT_PRECISION_BITS = 8;
+
+    public final int precisionBits;
+    private final int half;
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max;
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    public LatencyHistogram(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("Precision must be between 1 and 16 bits");
+        }
+        this.precisionBits = precisionBits;
+        this.half = 1 << (precisionBits - 1);
+        this.counts = new long[index(Integer.MAX_VALUE) + 1];
+    }
+
+    // Negative values, e.g. from a clock going backwards, count as 0
+    public void record(int value) {
+        value = Math.max(0, value);
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    private int index(int value) {
+        if (value < half << 1) return value;
+        int shift = 31 - Integer.numberOfLeadingZeros(value) - precisionBits + 1;
+        return shift * half + (value >>> shift);
+    }
+
+    // Largest value that falls in the bucket
+    private long highest(int index) {
+        if (index < half << 1) return index;
+        int shift = index / half - 1;
+        long mantissa = index - (long) shift * half;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public void merge(LatencyHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot merge histograms of " + precisionBits
+                    + " and " + other.precisionBits + " bits");
+        }
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public int min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public int max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // Nearest-rank percentile for p in [0, 1], like ParameterSweep.percentile; 0 if empty
+    public int percentile(double p) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        for (int i = 0; i < counts.length; i++) {
+            rank -= counts[i];
+            if (rank <= 0) return (int) Math.min(max, Math.max(min, highest(i)));
+        }
+        return max;
+    }
+
+    // Compact form for ResultCache: the summary, then the non-empty buckets
+    void write(ResultCache.Output out) {
+        out.writeVarInt(precisionBits);
+        out.writeVarLong(count);
+        out.writeVarLong(sum);
+        out.writeVarInt(min);
+        out.writeVarInt(max);
+        int buckets = 0;
+        for (long c : counts) {
+            if (c != 0) buckets++;
+        }
+        out.writeVarInt(buckets);
+        int last = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            out.writeVarInt(i - last);
+            out.writeVarLong(counts[i]);
+            last = i;
+        }
+    }
+
+    static LatencyHistogram read(ResultCache.Input in) {
+        LatencyHistogram histogram = new LatencyHistogram(in.readVarInt());
+        histogram.count = in.readVarLong();
+        histogram.sum = in.readVarLong();
+        histogram.min = in.readVarInt();
+        histogram.max = in.readVarInt();
+        int buckets = in.readVarInt();
+        int index = 0;
+        for (int i = 0; i < buckets; i++) {
+            index += in.readVarInt();
+            histogram.counts[index] = in.readVarLong();
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.2f p50=%d p99=%d p99.9=%d max=%d",
+                count, mean(), percentile(0.5), percentile(0.99), percentile(0.999), max());
+    }
+}
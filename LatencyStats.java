@@ -0,0 +1,30 @@
+/*
+ * Waiting, turnaround and response time histograms of one run, filled in
+ * by the engines as processes first run and as they complete.
+ * Response time is from arrival to the first tick the process executes.
+ */
+class LatencyStats {
+    public final LatencyHistogram waiting = new LatencyHistogram();
+    public final LatencyHistogram turnaround = new LatencyHistogram();
+    public final LatencyHistogram response = new LatencyHistogram();
+
+    void started(int arrival, int time) {
+        response.record(time - arrival);
+    }
+
+    void completed(int arrival, int burst, int finish) {
+        turnaround.record(finish - arrival);
+        waiting.record(finish - arrival - burst);
+    }
+
+    public void merge(LatencyStats other) {
+        waiting.merge(other.waiting);
+        turnaround.merge(other.turnaround);
+        response.merge(other.response);
+    }
+
+    @Override
+    public String toString() {
+        return "waiting    " + waiting + "\nturnaround " + turnaround + "\nresponse   " + response;
+    }
+}
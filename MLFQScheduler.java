@@ -0,0 +1,176 @@
+import java.util.*;
+
+/*
+ * Multi-level feedback queue scheduling.
+ * New processes enter the top level. Each level is a FIFO with its own
+ * quantum, and a process that uses up the quantum of its level, over one
+ * or more turns, drops one level. A process on a higher level always
+ * goes first, so an arrival preempts a process running below the top
+ * level. Every boostInterval time units all processes move back to the
+ * top level with a fresh quantum, so long jobs can't starve. A context
+ * switch costs contextSwitch, as in RoundRobinSchedule.
+ *
+ * The non-empty levels are bits of a long, so the next process comes from
+ * the queue at the lowest set bit whatever the queue lengths. It runs as a
+ * policy on the SimulationKernel, so a process runs a whole slice at a
+ * time, up to the next event that could change the decision: quantum end,
+ * completion, an arrival that outranks it, or a boost.
+ *
+ * The levels are linked lists threaded through a per-process array, so a
+ * boost splices the lower levels onto the end of the top one instead of
+ * moving processes. It also starts a new boost epoch; a process queued
+ * in an earlier epoch has its level and quantum reset when it is taken.
+ */
+public class MLFQScheduler {
+
+    public static final int MAX_LEVELS = 64;
+
+    // Quantum of each level, top level first
+    public final int[] quanta;
+    public int contextSwitch;
+    // 0 for no boost
+    public int boostInterval;
+
+    public MLFQScheduler(int[] quanta, int contextSwitch, int boostInterval) {
+        if (quanta.length < 1 || quanta.length > MAX_LEVELS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_LEVELS + " levels are needed");
+        }
+        for (int q : quanta) {
+            if (q < 1) throw new IllegalArgumentException("Quanta must be positive");
+        }
+        this.quanta = quanta.clone();
+        this.contextSwitch = contextSwitch;
+        this.boostInterval = boostInterval;
+    }
+
+    // base, 2 * base, 4 * base, ...
+    public static int[] doublingQuanta(int levels, int base) {
+        int[] quanta = new int[levels];
+        for (int i = 0; i < levels; i++) quanta[i] = (int) Math.min(Integer.MAX_VALUE, (long) base << i);
+        return quanta;
+    }
+
+    public RunResult run(ProcessView table) {
+        int[] parameters = new int[quanta.length + 2];
+        parameters[0] = contextSwitch;
+        parameters[1] = boostInterval;
+        System.arraycopy(quanta, 0, parameters, 2, quanta.length);
+        return ResultCache.cached("mlfq", table, parameters,
+                () -> new SimulationKernel(table, contextSwitch).run(new Policy(), "mlfq"));
+    }
+
+    private class Policy implements SchedulingPolicy {
+        private SimulationKernel kernel;
+        private int levels;
+        private int[] level;
+        // Time used of the current level's quantum
+        private int[] used;
+        // Next process in the same level, and the boost epoch it was queued in
+        private int[] link;
+        private int[] queuedIn;
+        private int[] head;
+        private int[] tail;
+        private long nonEmpty;
+        private int queued;
+        private int epoch;
+        private long nextBoost;
+        // Whether the process picked last can be preempted by an arrival, and was
+        private boolean preemptible;
+        private boolean outranked;
+
+        public void start(SimulationKernel kernel) {
+            this.kernel = kernel;
+            int n = kernel.n;
+            levels = quanta.length;
+            level = new int[n];
+            used = new int[n];
+            link = new int[n];
+            queuedIn = new int[n];
+            head = new int[levels];
+            tail = new int[levels];
+            Arrays.fill(head, -1);
+            Arrays.fill(tail, -1);
+            nextBoost = boostInterval > 0 ? boostInterval : Long.MAX_VALUE;
+        }
+
+        // Boost: everything waiting moves to the top level, in level order, with a fresh quantum
+        public void advance(int time) {
+            if (time < nextBoost) return;
+            for (int l = 1; l < levels; l++) {
+                if (head[l] < 0) continue;
+                if (head[0] < 0) head[0] = head[l];
+                else link[tail[0]] = head[l];
+                tail[0] = tail[l];
+                head[l] = tail[l] = -1;
+            }
+            epoch++;
+            nonEmpty = queued > 0 ? 1 : 0;
+            nextBoost = (time / boostInterval + 1L) * boostInterval;
+        }
+
+        // New arrivals join the top level
+        public void arrived(int p) {
+            level[p] = 0;
+            used[p] = 0;
+            queuedIn[p] = epoch;
+            enqueue(p, 0);
+        }
+
+        public int ready() {
+            return queued;
+        }
+
+        public int pick() {
+            int top = Long.numberOfTrailingZeros(nonEmpty);
+            int p = head[top];
+            head[top] = link[p];
+            if (head[top] < 0) {
+                tail[top] = -1;
+                nonEmpty &= ~(1L << top);
+            }
+            queued--;
+            if (queuedIn[p] != epoch) {
+                level[p] = 0;
+                used[p] = 0;
+            }
+            return p;
+        }
+
+        // Until the quantum ends, a boost is due, or an arrival outranks it
+        public int slice(int p) {
+            int time = kernel.time;
+            long end = (long) time + quanta[level[p]] - used[p];
+            end = Math.min(end, Math.max(nextBoost, time + 1L));
+            preemptible = level[p] > 0;
+            if (preemptible) end = Math.min(end, Math.max(kernel.nextArrival(), time + 1L));
+            return (int) Math.min(Integer.MAX_VALUE, end - time);
+        }
+
+        public void ran(int p, int time) {
+            used[p] += time;
+            outranked = preemptible && kernel.nextArrival() <= kernel.time;
+        }
+
+        public void requeue(int p) {
+            // Used up this level's quantum: one level down
+            if (used[p] == quanta[level[p]]) {
+                level[p] = Math.min(level[p] + 1, levels - 1);
+                used[p] = 0;
+                if (kernel.metrics != null) kernel.metrics.quantumExpiries++;
+            } else if (outranked && kernel.metrics != null) {
+                kernel.metrics.priorityPreemptions++;
+            }
+            queuedIn[p] = epoch;
+            enqueue(p, level[p]);
+        }
+
+        private void enqueue(int p, int l) {
+            link[p] = -1;
+            if (head[l] < 0) head[l] = p;
+            else link[tail[l]] = p;
+            tail[l] = p;
+            nonEmpty |= 1L << l;
+            queued++;
+        }
+    }
+}
@@ -1,77 +1,101 @@
 import com.google.gson.*;
-import java.io.FileReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 public class Main {
 
-    static JsonObject loadJson(String filePath) throws Exception {
-        Gson gson = new Gson();
-        return gson.fromJson(new FileReader(filePath), JsonObject.class);
-    }
-
-
     public static void main(String[] args) throws Exception
     {
+        // Each file is parsed once and shared by every scheduler
+        List<Workload> cases = new ArrayList<>();
+        for (int i=1;i<=6;i++)
+        {
+            cases.add(WorkloadLoader.load("test_cases_v5\\Other_Schedulers\\test_"+ i+ ".json"));
+        }
 
         //Round Robin Testing
         for (int i=1;i<=6;i++)
         {
-            String fileName = "test_cases_v5\\Other_Schedulers\\test_"+ i+ ".json";
-            JsonObject root = loadJson(fileName);
-            runAndCompareRR(root,i);
+            runAndCompareRR(cases.get(i-1),i);
         }
 
         //Shortest Job First Testing
         for (int i=1; i<=6; i++) {
-            String fileName = "test_cases_v5\\Other_Schedulers\\test_"+ i+ ".json";
-            JsonObject root = loadJson(fileName);
-            runAndCompareSJF(root,i);
+            runAndCompareSJF(cases.get(i-1),i);
         }
 
         //Priority Scheduling Testing
         for (int i=1; i<=6; i++) {
-            String fileName = "test_cases_v5\\Other_Schedulers\\test_"+ i+ ".json";
-            JsonObject root = loadJson(fileName);
-            runAndComparePriority(root, i);
+            runAndComparePriority(cases.get(i-1), i);
+        }
+
+        //MLFQ Testing, for the cases that come with expected MLFQ results
+        for (int i=1; i<=6; i++) {
+            if (cases.get(i-1).expectedOutput.has("MLFQ")) {
+                runAndCompareMLFQ(cases.get(i-1), i);
+            }
+        }
+
+        //CFS Testing, likewise only where expected CFS results are given
+        for (int i=1; i<=6; i++) {
+            if (cases.get(i-1).expectedOutput.has("CFS")) {
+                runAndCompareCFS(cases.get(i-1), i);
+            }
         }
 
         //AG Scheduling Testing
         for (int i=1;i<=6;i++) {
-            String fileName = "test_cases_v5\\AG\\AG_test"+i+".json";
-            JsonObject root = loadJson(fileName);
-            runAndCompareAG(root, i);
+            Workload workload = WorkloadLoader.load("test_cases_v5\\AG\\AG_test"+i+".json");
+            runAndCompareAG(workload, i);
         }
 
+        //Binary workloads must hash to the same digest as their source, so cached runs can't mix traces up
+        runDigestTest(cases);
+
 
     }
-    static void runAndCompareRR(JsonObject root, int testNum) {
-
-        JsonObject input = root.getAsJsonObject("input");
-        JsonObject expectedRR = root.getAsJsonObject("expectedOutput").getAsJsonObject("RR");
-
-        int contextSwitch = input.get("contextSwitch").getAsInt();
-        int rrQuantum = input.get("rrQuantum").getAsInt();
-
-        //Build RR process list
-        List<RoundRobinProcess> processList = new ArrayList<>();
-
-        JsonArray processes = input.getAsJsonArray("processes");
-        for (JsonElement e : processes) {
-            JsonObject p = e.getAsJsonObject();
-            processList.add(new RoundRobinProcess(
-                    p.get("name").getAsString(),
-                    p.get("arrival").getAsInt(),
-                    p.get("burst").getAsInt(),
-                    p.get("priority").getAsInt()
-            ));
+
+    // Row of the named process in a run, or -1
+    static int findRow(RunResult result, String name) {
+        for (int row = 0; row < result.size(); row++) {
+            if (result.name(row).equals(name)) return row;
+        }
+        return -1;
+    }
+
+    static void runDigestTest(List<Workload> cases) throws Exception {
+        System.out.println("\n========== BINARY WORKLOAD DIGEST TEST ==========\n");
+
+        Set<String> expected = new HashSet<>();
+        Set<String> actual = new HashSet<>();
+        for (int i = 0; i < cases.size(); i++) {
+            Workload workload = cases.get(i);
+            Path file = Files.createTempFile("workload", ".bin");
+            // Still mapped until collected, which some platforms won't delete
+            file.toFile().deleteOnExit();
+            BinaryWorkload.write(workload, file);
+            ProcessView mapped = BinaryWorkload.open(file).processes;
+
+            boolean same = Arrays.equals(mapped.digest(), workload.processes.digest());
+            System.out.println("Test " + (i + 1) + " mapped digest equals loaded digest -> " + (same ? "PASS" : "FAIL"));
+            expected.add(Base64.getEncoder().encodeToString(workload.processes.digest()));
+            actual.add(Base64.getEncoder().encodeToString(mapped.digest()));
         }
+        System.out.println("Distinct digests Expected=" + expected.size() + ", Actual=" + actual.size() +
+                " -> " + (expected.size() == actual.size() ? "PASS" : "FAIL"));
+    }
+
+    static void runAndCompareRR(Workload workload, int testNum) {
+
+        JsonObject expectedRR = workload.expectedOutput.getAsJsonObject("RR");
 
         //  Run RR
-        RoundRobinResult actualRR = RoundRobinSchedule.schedule(processList, rrQuantum, contextSwitch);
+        RunResult actualRR = RoundRobinSchedule.schedule(workload.processes, workload.rrQuantum, workload.contextSwitch);
 
         System.out.println("\n========== ROUND ROBIN COMPARISON TEST "+ testNum + " ==========\n");
 
         //  Execution Order
-        List<String> actualOrder = actualRR.getExcutionOrder();
+        List<String> actualOrder = actualRR.executionOrder;
         List<String> expectedOrder = new ArrayList<>();
 
         for (JsonElement e : expectedRR.getAsJsonArray("executionOrder")) {
@@ -94,16 +118,10 @@ public class Main {
             int expWT = exp.get("waitingTime").getAsInt();
             int expTAT = exp.get("turnaroundTime").getAsInt();
 
-            RoundRobinProcess actual = null;
-            for (RoundRobinProcess p : actualRR.getProcesses()) {
-                if (p.getName().equals(name)) {
-                    actual = p;
-                    break;
-                }
-            }
+            int row = findRow(actualRR, name);
 
-            int actWT = actual.getWaitTime();
-            int actTAT = actual.getTaTime();
+            int actWT = actualRR.waitingTime[row];
+            int actTAT = actualRR.turnaroundTime[row];
 
             System.out.println("Process " + name);
             System.out.println("  Waiting Time    Expected=" + expWT +
@@ -119,46 +137,30 @@ public class Main {
         double expAvgWT = expectedRR.get("averageWaitingTime").getAsDouble();
         double expAvgTAT = expectedRR.get("averageTurnaroundTime").getAsDouble();
 
-        double actAvgWT = actualRR.getAvgWaitTime();
-        double actAvgTAT = actualRR.getAvgTaTime();
+        double actAvgWT = actualRR.averageWaitingTime;
+        double actAvgTAT = actualRR.averageTurnaroundTime;
 
         System.out.println("Averages:");
         System.out.printf(
                 "Average Waiting Time    Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgWT, actAvgWT,
-                Math.abs(expAvgWT - actAvgWT) < 0.01 ? "PASS" : "FAIL"
+                averageMatches("RR", expAvgWT, actAvgWT) ? "PASS" : "FAIL"
         );
 
         System.out.printf(
                 "Average Turnaround Time Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgTAT, actAvgTAT,
-                Math.abs(expAvgTAT - actAvgTAT) < 0.01 ? "PASS" : "FAIL"
+                averageMatches("RR", expAvgTAT, actAvgTAT) ? "PASS" : "FAIL"
         );
 
     }
 
-    static void runAndCompareSJF(JsonObject root, int testNum) {
-
-        JsonObject input = root.getAsJsonObject("input");
-        JsonObject expectedSJF = root.getAsJsonObject("expectedOutput").getAsJsonObject("SJF");
+    static void runAndCompareSJF(Workload workload, int testNum) {
 
-        int contextSwitch = input.get("contextSwitch").getAsInt();
-
-        // Build process list
-        List<ShortestJobFirstProcess.Process> processList = new ArrayList<>();
-
-        for (JsonElement e : input.getAsJsonArray("processes")) {
-            JsonObject p = e.getAsJsonObject();
-            processList.add(new ShortestJobFirstProcess.Process(
-                    p.get("name").getAsString(),
-                    p.get("arrival").getAsInt(),
-                    p.get("burst").getAsInt(),
-                    p.has("priority") ? p.get("priority").getAsInt() : 0
-            ));
-        }
+        JsonObject expectedSJF = workload.expectedOutput.getAsJsonObject("SJF");
 
         //  Run SJF
-        ShortestJobFirstProcess.SJFResult actual = ShortestJobFirstProcess.schedule(processList, contextSwitch);
+        RunResult actual = ShortestJobFirstProcess.schedule(workload.processes, workload.contextSwitch);
 
         System.out.println("\n========== SJF COMPARISON TEST " + testNum + " ==========\n");
 
@@ -178,11 +180,6 @@ public class Main {
         //  Process Results
         System.out.println("Per-Process Results:");
 
-        Map<String, ShortestJobFirstProcess.Process> actualMap = new HashMap<>();
-        for (ShortestJobFirstProcess.Process p : actual.processes) {
-            actualMap.put(p.name, p);
-        }
-
         for (JsonElement e : expectedSJF.getAsJsonArray("processResults")) {
             JsonObject exp = e.getAsJsonObject();
             String name = exp.get("name").getAsString();
@@ -190,21 +187,21 @@ public class Main {
             int expWT = exp.get("waitingTime").getAsInt();
             int expTAT = exp.get("turnaroundTime").getAsInt();
 
-            ShortestJobFirstProcess.Process act = actualMap.get(name);
+            int row = findRow(actual, name);
 
-            if (act == null) {
+            if (row < 0) {
                 System.out.println("Process " + name + " NOT FOUND -> FAIL");
                 continue;
             }
 
             System.out.println("Process " + name);
             System.out.println("  Waiting Time    Expected=" + expWT +
-                    ", Actual=" + act.waitingtime +
-                    " -> " + (expWT == act.waitingtime ? "PASS" : "FAIL"));
+                    ", Actual=" + actual.waitingTime[row] +
+                    " -> " + (expWT == actual.waitingTime[row] ? "PASS" : "FAIL"));
 
             System.out.println("  Turnaround Time Expected=" + expTAT +
-                    ", Actual=" + act.turnaroundtime +
-                    " -> " + (expTAT == act.turnaroundtime ? "PASS" : "FAIL"));
+                    ", Actual=" + actual.turnaroundTime[row] +
+                    " -> " + (expTAT == actual.turnaroundTime[row] ? "PASS" : "FAIL"));
             System.out.println();
         }
 
@@ -217,46 +214,29 @@ public class Main {
         System.out.printf(
                 "Average Waiting Time    Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgWT, actual.averageWaitingTime,
-                Math.abs(expAvgWT - actual.averageWaitingTime) < 0.01 ? "PASS" : "FAIL"
+                averageMatches("SJF", expAvgWT, actual.averageWaitingTime) ? "PASS" : "FAIL"
         );
 
         System.out.printf(
                 "Average Turnaround Time Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgTAT, actual.averageTurnaroundTime,
-                Math.abs(expAvgTAT - actual.averageTurnaroundTime) < 0.01 ? "PASS" : "FAIL"
+                averageMatches("SJF", expAvgTAT, actual.averageTurnaroundTime) ? "PASS" : "FAIL"
         );
     }
 
 
-    static void runAndComparePriority(JsonObject root, int testNum) {
-        JsonObject input = root.getAsJsonObject("input");
-        JsonObject expectedPriority = root.getAsJsonObject("expectedOutput").getAsJsonObject("Priority");
-
-        int contextSwitch = input.get("contextSwitch").getAsInt();
-        int rrQuantum = input.get("rrQuantum").getAsInt();
-        int agingInterval = input.has("agingInterval") ? input.get("agingInterval").getAsInt() : 0;
-
-        //  Build Priority process list
-        ArrayList<Process> processList = new ArrayList<>();
-        JsonArray processes = input.getAsJsonArray("processes");
-
-        for (JsonElement e : processes) {
-            JsonObject p = e.getAsJsonObject();
-            String name = p.get("name").getAsString();
-            int arrival = p.get("arrival").getAsInt();
-            int burst = p.get("burst").getAsInt();
-            int priority = p.get("priority").getAsInt();
-            processList.add(new Process(name, arrival, burst, priority));
-        }
+    static void runAndComparePriority(Workload workload, int testNum) {
+        JsonObject expectedPriority = workload.expectedOutput.getAsJsonObject("Priority");
 
         // Run Priority Scheduling
-        PriorityScheduling scheduler = new PriorityScheduling(contextSwitch, rrQuantum, agingInterval, processList);
-        SchedulerOutput actualOutput = scheduler.exec();
+        PriorityScheduling scheduler = new PriorityScheduling(
+                workload.contextSwitch, workload.rrQuantum, workload.agingInterval, workload.processes);
+        RunResult actualOutput = scheduler.run();
 
         System.out.println("\n========== PRIORITY SCHEDULING COMPARISON TEST " + testNum + " ==========\n");
 
         // Execution Order
-        List<String> actualOrder = actualOutput.ExecutionOrder;
+        List<String> actualOrder = actualOutput.executionOrder;
         List<String> expectedOrder = new ArrayList<>();
 
         for (JsonElement e : expectedPriority.getAsJsonArray("executionOrder")) {
@@ -282,9 +262,9 @@ public class Main {
             int expWT = exp.get("waitingTime").getAsInt();
             int expTAT = exp.get("turnaroundTime").getAsInt();
 
-            // Use the same index for actual results
-            int actWT = actualOutput.WaitingTime.get(i);
-            int actTAT = actualOutput.TurnaroundTime.get(i);
+            int row = findRow(actualOutput, name);
+            int actWT = actualOutput.waitingTime[row];
+            int actTAT = actualOutput.turnaroundTime[row];
 
             System.out.println("Process " + name);
             System.out.println("  Waiting Time    Expected=" + expWT + ", Actual=" + actWT + " -> " + (expWT == actWT ? "PASS" : "FAIL"));
@@ -296,23 +276,90 @@ public class Main {
         double expAvgWT = expectedPriority.get("averageWaitingTime").getAsDouble();
         double expAvgTAT = expectedPriority.get("averageTurnaroundTime").getAsDouble();
 
-        double actAvgWT = actualOutput.AverageWaitingTime;
-        double actAvgTAT = actualOutput.AverageTurnaroundTime;
+        double actAvgWT = actualOutput.averageWaitingTime;
+        double actAvgTAT = actualOutput.averageTurnaroundTime;
 
         System.out.println("Averages:");
         System.out.printf(
                 "Average Waiting Time    Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgWT, actAvgWT,
-                Math.abs(expAvgWT - actAvgWT) <= 0.2 ? "PASS" : "FAIL"
+                averageMatches("Priority", expAvgWT, actAvgWT) ? "PASS" : "FAIL"
         );
 
         System.out.printf(
                 "Average Turnaround Time Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgTAT, actAvgTAT,
-                Math.abs(expAvgTAT - actAvgTAT) <= 0.2 ? "PASS" : "FAIL"
+                averageMatches("Priority", expAvgTAT, actAvgTAT) ? "PASS" : "FAIL"
         );
     }
 
+    // Levels, quanta and boosts are read from the expected section as in GoldenVerifier.run
+    static void runAndCompareMLFQ(Workload workload, int testNum) {
+        JsonObject expected = workload.expectedOutput.getAsJsonObject("MLFQ");
+        compareRun("MLFQ", expected, GoldenVerifier.run("MLFQ", workload, expected), testNum);
+    }
+
+    // Latency, granularity and reference priority are read from the expected section as in GoldenVerifier.run
+    static void runAndCompareCFS(Workload workload, int testNum) {
+        JsonObject expected = workload.expectedOutput.getAsJsonObject("CFS");
+        compareRun("CFS", expected, GoldenVerifier.run("CFS", workload, expected), testNum);
+    }
+
+    static void compareRun(String policy, JsonObject expected, RunResult actual, int testNum) {
+        System.out.println("\n========== " + policy + " COMPARISON TEST " + testNum + " ==========\n");
+
+        List<String> expectedOrder = new ArrayList<>();
+        for (JsonElement e : expected.getAsJsonArray("executionOrder")) {
+            expectedOrder.add(e.getAsString());
+        }
+
+        System.out.println("Execution Order:");
+        System.out.println("Expected: " + expectedOrder);
+        System.out.println("Actual  : " + actual.executionOrder);
+        System.out.println("Result  : " + (expectedOrder.equals(actual.executionOrder) ? "PASS" : "FAIL"));
+        System.out.println();
+
+        System.out.println("Per-Process Results:");
+        for (JsonElement e : expected.getAsJsonArray("processResults")) {
+            JsonObject exp = e.getAsJsonObject();
+            String name = exp.get("name").getAsString();
+            int expWT = exp.get("waitingTime").getAsInt();
+            int expTAT = exp.get("turnaroundTime").getAsInt();
+
+            int row = findRow(actual, name);
+            if (row < 0) {
+                System.out.println("Process " + name + " NOT FOUND -> FAIL");
+                continue;
+            }
+
+            System.out.println("Process " + name);
+            System.out.println("  Waiting Time    Expected=" + expWT +
+                    ", Actual=" + actual.waitingTime[row] +
+                    " -> " + (expWT == actual.waitingTime[row] ? "PASS" : "FAIL"));
+            System.out.println("  Turnaround Time Expected=" + expTAT +
+                    ", Actual=" + actual.turnaroundTime[row] +
+                    " -> " + (expTAT == actual.turnaroundTime[row] ? "PASS" : "FAIL"));
+            System.out.println();
+        }
+
+        double expAvgWT = expected.get("averageWaitingTime").getAsDouble();
+        double expAvgTAT = expected.get("averageTurnaroundTime").getAsDouble();
+
+        System.out.println("Averages:");
+        System.out.printf("Average Waiting Time    Expected=%.2f, Actual=%.2f -> %s%n",
+                expAvgWT, actual.averageWaitingTime,
+                averageMatches(policy, expAvgWT, actual.averageWaitingTime) ? "PASS" : "FAIL");
+        System.out.printf("Average Turnaround Time Expected=%.2f, Actual=%.2f -> %s%n",
+                expAvgTAT, actual.averageTurnaroundTime,
+                averageMatches(policy, expAvgTAT, actual.averageTurnaroundTime) ? "PASS" : "FAIL");
+    }
+
+    // Priority averages are held to 0.2, every other policy's to 0.01
+    static boolean averageMatches(String policy, double expected, double actual) {
+        double difference = Math.abs(expected - actual);
+        return policy.equals("Priority") ? difference <= 0.2 : difference < 0.01;
+    }
+
     static boolean compareHistory(JsonArray expected, List<Integer> actual) {
         if (expected.size() != actual.size()) return false;
         for (int i = 0; i < expected.size(); i++) {
@@ -321,26 +368,11 @@ public class Main {
         return true;
     }
 
-    static void runAndCompareAG(JsonObject root, int testNum) {
-        JsonObject input = root.getAsJsonObject("input");
-        JsonObject expected = root.getAsJsonObject("expectedOutput");
-
-        //  Build AG task list
-        List<Task> taskList = new ArrayList<>();
-        JsonArray processes = input.getAsJsonArray("processes");
-
-        for (JsonElement e : processes) {
-            JsonObject p = e.getAsJsonObject();
-            String name = p.get("name").getAsString();
-            int arrival = p.get("arrival").getAsInt();
-            int burst = p.get("burst").getAsInt();
-            int priority = p.get("priority").getAsInt();
-            int quantum = p.get("quantum").getAsInt();
-            taskList.add(new Task(name, arrival, burst, priority, quantum));
-        }
+    static void runAndCompareAG(Workload workload, int testNum) {
+        JsonObject expected = workload.expectedOutput;
 
         // Run AG Scheduling
-        AGScheduler.AGScheduleResult result = AGScheduler.runSchedule(taskList);
+        RunResult result = AGScheduler.runSchedule(workload.processes);
 
         System.out.println("\n========== AG SCHEDULING TEST " + testNum + " ==========\n");
 
@@ -363,10 +395,9 @@ public class Main {
             JsonObject exp = expectedProcessResults.get(i).getAsJsonObject();
             String name = exp.get("name").getAsString();
 
-            AGScheduler.AGProcessResult actual = result.processResults.stream()
-                    .filter(t -> t.name.equals(name))
-                    .findFirst()
-                    .orElseThrow();
+            int row = findRow(result, name);
+            if (row < 0) throw new NoSuchElementException(name);
+            List<Integer> actualHistory = result.quantumHistory.of(row);
 
             int expWT = exp.get("waitingTime").getAsInt();
             int expTAT = exp.get("turnaroundTime").getAsInt();
@@ -374,16 +405,16 @@ public class Main {
 
             System.out.println("Process " + name);
             System.out.println("  Waiting Time    Expected=" + expWT +
-                    ", Actual=" + actual.waitingTime +
-                    " -> " + (expWT == actual.waitingTime ? "PASS" : "FAIL"));
+                    ", Actual=" + result.waitingTime[row] +
+                    " -> " + (expWT == result.waitingTime[row] ? "PASS" : "FAIL"));
 
             System.out.println("  Turnaround Time Expected=" + expTAT +
-                    ", Actual=" + actual.turnaroundTime +
-                    " -> " + (expTAT == actual.turnaroundTime ? "PASS" : "FAIL"));
+                    ", Actual=" + result.turnaroundTime[row] +
+                    " -> " + (expTAT == result.turnaroundTime[row] ? "PASS" : "FAIL"));
 
             System.out.println("  Quantum History Expected=" + expHistory +
-                    ", Actual=" + actual.quantumHistory +
-                    " -> " + (compareHistory(expHistory, actual.quantumHistory) ? "PASS" : "FAIL"));
+                    ", Actual=" + actualHistory +
+                    " -> " + (compareHistory(expHistory, actualHistory) ? "PASS" : "FAIL"));
             System.out.println();
         }
 
@@ -394,10 +425,10 @@ public class Main {
         System.out.println("Averages:");
         System.out.printf("Average Waiting Time    Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgWT, result.averageWaitingTime,
-                Math.abs(expAvgWT - result.averageWaitingTime) < 0.01 ? "PASS" : "FAIL");
+                averageMatches("AG", expAvgWT, result.averageWaitingTime) ? "PASS" : "FAIL");
         System.out.printf("Average Turnaround Time Expected=%.2f, Actual=%.2f -> %s%n",
                 expAvgTAT, result.averageTurnaroundTime,
-                Math.abs(expAvgTAT - result.averageTurnaroundTime) < 0.01 ? "PASS" : "FAIL");
+                averageMatches("AG", expAvgTAT, result.averageTurnaroundTime) ? "PASS" : "FAIL");
     }
 
 
@@ -0,0 +1,114 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Process-wide SchedulerMetrics totals by policy name. Runs count on their
+ * own thread and are added in once, when they finish, so the only shared
+ * work is one short synchronized merge per run. The totals are exported
+ * over JMX once exportJmx() has been called or the JVM was started with
+ * -Dscheduler.metrics.jmx=true.
+ */
+public class MetricsRegistry {
+
+    private static final Map<String, Totals> totals = new ConcurrentHashMap<>();
+    private static volatile boolean jmx = Boolean.getBoolean("scheduler.metrics.jmx");
+
+    // Adds a finished run; null (metrics disabled) is ignored
+    public static void record(String policy, SchedulerMetrics run) {
+        if (run == null) return;
+        totals.computeIfAbsent(policy, MetricsRegistry::newTotals).add(run);
+    }
+
+    // Copy of the totals so far, or null if no run of that policy was recorded
+    public static SchedulerMetrics snapshot(String policy) {
+        Totals t = totals.get(policy);
+        return t == null ? null : t.snapshot();
+    }
+
+    public static Set<String> policies() {
+        return new TreeSet<>(totals.keySet());
+    }
+
+    // Registers the policies seen so far and every later one
+    public static synchronized void exportJmx() {
+        if (jmx) return;
+        jmx = true;
+        for (Map.Entry<String, Totals> e : totals.entrySet()) register(e.getKey(), e.getValue());
+    }
+
+    private static Totals newTotals(String policy) {
+        Totals t = new Totals();
+        if (jmx) register(policy, t);
+        return t;
+    }
+
+    private static void register(String policy, Totals t) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(t,
+                    new ObjectName("scheduler:type=SchedulerMetrics,policy=" + ObjectName.quote(policy)));
+        } catch (JMException e) {
+            // Already registered, e.g. by another class loader; the totals are still kept here
+        }
+    }
+
+    private static class Totals implements SchedulerMetricsMXBean {
+        private SchedulerMetrics sum = new SchedulerMetrics();
+
+        synchronized void add(SchedulerMetrics run) {
+            sum.merge(run);
+        }
+
+        synchronized SchedulerMetrics snapshot() {
+            SchedulerMetrics copy = new SchedulerMetrics();
+            copy.merge(sum);
+            return copy;
+        }
+
+        public synchronized long getRuns() {
+            return sum.runs;
+        }
+
+        public synchronized long getDispatches() {
+            return sum.dispatches;
+        }
+
+        public synchronized long getContextSwitches() {
+            return sum.contextSwitches;
+        }
+
+        public synchronized long getPriorityPreemptions() {
+            return sum.priorityPreemptions;
+        }
+
+        public synchronized long getShortestJobPreemptions() {
+            return sum.shortestJobPreemptions;
+        }
+
+        public synchronized long getQuantumExpiries() {
+            return sum.quantumExpiries;
+        }
+
+        public synchronized long getIdleTicks() {
+            return sum.idleTicks;
+        }
+
+        public synchronized double getMeanQueueDepth() {
+            return sum.meanQueueDepth();
+        }
+
+        public synchronized long getQueueDepthP99() {
+            return sum.queueDepthPercentile(0.99);
+        }
+
+        public synchronized long[] getQueueDepthHistogram() {
+            return sum.queueDepth.clone();
+        }
+
+        public synchronized void reset() {
+            sum = new SchedulerMetrics();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+import java.util.*;
+
+/*
+ * Incremental form of AGScheduler for a live job feed, with the same
+ * submit / advanceTo / finish contract as OnlinePriorityScheduling.
+ * A tick is only simulated once every arrival up to its end is known,
+ * since an arrival during the tick can take part in the preemption checks
+ * that follow it. Those checks only happen at 25% and 50% of the quantum,
+ * at its end and at completion, so the running job goes straight to the
+ * next of them.
+ */
+public class OnlineAGScheduler {
+
+    private final SchedulerListener listener;
+    // Null when metrics are disabled; added to MetricsRegistry by finish()
+    public final SchedulerMetrics metrics = SchedulerMetrics.create();
+    public final LatencyStats latency = new LatencyStats();
+    // Optional, set before the first submit
+    public StarvationDetector starvation;
+
+    // Per-slot state
+    private final SlotPool slots = new SlotPool();
+    private int[] id = new int[16];
+    private int[] arrival = new int[16];
+    private int[] burst = new int[16];
+    private int[] priority = new int[16];
+    private int[] remaining = new int[16];
+    private int[] quantum = new int[16];
+    private int[][] history = new int[16][];
+    private int[] historyLength = new int[16];
+
+    private final AGScheduler.WaitingQueue waitingList = new AGScheduler.WaitingQueue();
+    // Submitted but not yet arrived, by arrival then submission order
+    private final IndexedMinHeap pending;
+
+    private int submitted;
+    private int inFlight;
+    // Every job arriving at or before the horizon has been submitted
+    private long horizon = -1;
+
+    private int timer;
+    private int currentJob = -1;
+    private int currentUsage;
+
+    // Dispatch segment still being extended
+    private int segmentId = -1;
+    private int segmentStart;
+    private int segmentEnd;
+    private int lastDispatched = -1;
+
+    public OnlineAGScheduler(SchedulerListener listener) {
+        this.listener = listener;
+        this.pending = new IndexedMinHeap(16, (a, b) -> arrival[a] != arrival[b]
+                ? Integer.compare(arrival[a], arrival[b])
+                : Integer.compare(id[a], id[b]));
+    }
+
+    /*
+     * Independent copy of the engine as it stands, reporting to listener
+     * from here on; the dispatch segment still being extended goes with it.
+     * Not supported with a starvation detector, whose state isn't copied.
+     */
+    OnlineAGScheduler copy(SchedulerListener listener) {
+        if (starvation != null) throw new IllegalStateException("A run with a starvation detector can't be copied");
+        OnlineAGScheduler copy = new OnlineAGScheduler(listener);
+        if (metrics != null) {
+            copy.metrics.merge(metrics);
+            copy.metrics.runs = metrics.runs;
+        }
+        copy.latency.merge(latency);
+        copy.slots.copyFrom(slots);
+        copy.id = id.clone();
+        copy.arrival = arrival.clone();
+        copy.burst = burst.clone();
+        copy.priority = priority.clone();
+        copy.remaining = remaining.clone();
+        copy.quantum = quantum.clone();
+        copy.history = new int[history.length][];
+        for (int slot = 0; slot < history.length; slot++) {
+            if (history[slot] != null) copy.history[slot] = history[slot].clone();
+        }
+        copy.historyLength = historyLength.clone();
+        copy.waitingList.copyFrom(waitingList);
+        copy.pending.copyFrom(pending);
+        copy.submitted = submitted;
+        copy.inFlight = inFlight;
+        copy.horizon = horizon;
+        copy.timer = timer;
+        copy.currentJob = currentJob;
+        copy.currentUsage = currentUsage;
+        copy.segmentId = segmentId;
+        copy.segmentStart = segmentStart;
+        copy.segmentEnd = segmentEnd;
+        copy.lastDispatched = lastDispatched;
+        return copy;
+    }
+
+    // Adds a job and returns its id; arrivals at or before the advanced time are rejected
+    public int submit(String name, int arrivalTime, int burstTime, int taskPriority, int initialQuantum) {
+        if (arrivalTime <= horizon) {
+            throw new IllegalArgumentException("Arrival " + arrivalTime + " is not after the advanced time " + horizon);
+        }
+        int slot = slots.acquire();
+        ensureCapacity(slot + 1);
+        id[slot] = submitted;
+        arrival[slot] = arrivalTime;
+        burst[slot] = burstTime;
+        priority[slot] = taskPriority;
+        remaining[slot] = burstTime;
+        quantum[slot] = initialQuantum;
+        if (history[slot] == null) history[slot] = new int[4];
+        historyLength[slot] = 0;
+        record(slot);
+        pending.add(slot);
+        inFlight++;
+        return submitted++;
+    }
+
+    // Promises that every job arriving at or before time has been submitted, and simulates up to it
+    public void advanceTo(int time) {
+        horizon = Math.max(horizon, time);
+        step();
+    }
+
+    // No more jobs will come: runs everything left to completion
+    public void finish() {
+        horizon = Long.MAX_VALUE;
+        step();
+        closeSegment();
+        MetricsRegistry.record("ag", metrics);
+    }
+
+    public int currentTime() {
+        return timer;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    private void step() {
+        while (timer <= horizon) {
+            admit(timer);
+
+            // CPU idle case
+            if (currentJob < 0) {
+                if (!waitingList.isEmpty()) {
+                    if (metrics != null) metrics.queueDepth(waitingList.size());
+                    currentJob = waitingList.pollFirst();
+                    openSegment(currentJob);
+                    currentUsage = 0;
+                } else {
+                    // Nothing can happen before the next arrival
+                    if (pending.isEmpty()) return;
+                    int next = Math.max(timer, arrival[pending.peek()]);
+                    if (next > horizon) return;
+                    if (metrics != null) metrics.idleTicks += next - timer;
+                    timer = next;
+                    continue;
+                }
+            }
+
+            // The checks after a tick see the arrivals up to its end
+            if ((long) timer + 1 > horizon) return;
+
+            int q = quantum[currentJob];
+            int limit25 = (int) Math.ceil(q * 0.25);
+            int limit50 = limit25 * 2;
+
+            // Run to the next check, completion or the horizon
+            long end = Math.min((long) timer + remaining[currentJob], horizon);
+            if (limit25 > currentUsage) end = Math.min(end, (long) timer + limit25 - currentUsage);
+            if (limit50 > currentUsage) end = Math.min(end, (long) timer + limit50 - currentUsage);
+            if (q > currentUsage) end = Math.min(end, (long) timer + q - currentUsage);
+            if (starvation != null) {
+                end = Math.min(end, starvation.nextCheck(pending.isEmpty() ? Integer.MAX_VALUE : arrival[pending.peek()]));
+            }
+            int ticks = (int) Math.max(1, end - timer);
+
+            if (remaining[currentJob] == burst[currentJob]) latency.started(arrival[currentJob], timer);
+            remaining[currentJob] -= ticks;
+            currentUsage += ticks;
+            timer += ticks;
+            segmentEnd = timer;
+            if (starvation != null) {
+                // Tick by tick, the arrivals before the last tick would already have been admitted
+                admit(timer - 1);
+                starvation.ran(currentJob, ticks);
+                starvation.check(timer);
+            }
+
+            admit(timer);
+
+            // Task finished
+            if (remaining[currentJob] == 0) {
+                quantum[currentJob] = 0;
+                record(currentJob);
+                complete(currentJob);
+                currentJob = -1;
+                currentUsage = 0;
+                continue;
+            }
+
+            // Quantum end
+            if (currentUsage == q) {
+                quantum[currentJob] += 2;
+                record(currentJob);
+                waitingList.add(currentJob, priority[currentJob], remaining[currentJob]);
+                currentJob = -1;
+                if (metrics != null) metrics.quantumExpiries++;
+                continue;
+            }
+
+            // 25% Quantum: Priority preemption
+            if (currentUsage == limit25) {
+                int bestPriority = waitingList.bestPriority();
+                if (bestPriority >= 0 && priority[bestPriority] < priority[currentJob]) {
+                    int unused = q - currentUsage;
+                    quantum[currentJob] += (int) Math.ceil(unused / 2.0);
+                    record(currentJob);
+
+                    waitingList.add(currentJob, priority[currentJob], remaining[currentJob]);
+                    waitingList.remove(bestPriority);
+                    if (metrics != null) metrics.priorityPreemptions++;
+                    currentJob = bestPriority;
+                    openSegment(currentJob);
+                    currentUsage = 0;
+                }
+            }
+
+            // 50% Quantum: Shortest Job preemption
+            if (currentUsage == limit50) {
+                int bestSJF = waitingList.shortestJob();
+                if (bestSJF >= 0 && remaining[bestSJF] < remaining[currentJob]) {
+                    int unused = q - currentUsage;
+                    quantum[currentJob] += unused;
+                    record(currentJob);
+
+                    waitingList.add(currentJob, priority[currentJob], remaining[currentJob]);
+                    waitingList.remove(bestSJF);
+                    if (metrics != null) metrics.shortestJobPreemptions++;
+                    currentJob = bestSJF;
+                    openSegment(currentJob);
+                    currentUsage = 0;
+                }
+            }
+        }
+    }
+
+    private void admit(int time) {
+        while (!pending.isEmpty() && arrival[pending.peek()] <= time) {
+            int slot = pending.poll();
+            waitingList.add(slot, priority[slot], remaining[slot]);
+            if (starvation != null) starvation.arrived(slot, id[slot], priority[slot], arrival[slot]);
+        }
+    }
+
+    // Appends the current quantum to the slot's history
+    private void record(int slot) {
+        if (historyLength[slot] == history[slot].length) {
+            history[slot] = Arrays.copyOf(history[slot], historyLength[slot] * 2);
+        }
+        history[slot][historyLength[slot]++] = quantum[slot];
+    }
+
+    private void complete(int slot) {
+        latency.completed(arrival[slot], burst[slot], timer);
+        if (starvation != null) starvation.completed(slot, timer - arrival[slot] - burst[slot]);
+        listener.completed(id[slot], arrival[slot], burst[slot], timer,
+                Arrays.copyOf(history[slot], historyLength[slot]));
+        slots.release(slot);
+        inFlight--;
+    }
+
+    private void openSegment(int slot) {
+        closeSegment();
+        if (metrics != null) {
+            metrics.dispatches++;
+            if (lastDispatched >= 0 && lastDispatched != id[slot]) metrics.contextSwitches++;
+        }
+        lastDispatched = id[slot];
+        segmentId = id[slot];
+        segmentStart = timer;
+        segmentEnd = timer;
+    }
+
+    private void closeSegment() {
+        if (segmentId >= 0) {
+            listener.dispatched(segmentId, segmentStart, segmentEnd);
+            segmentId = -1;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= id.length) return;
+        int grown = Math.max(capacity, id.length * 2);
+        id = Arrays.copyOf(id, grown);
+        arrival = Arrays.copyOf(arrival, grown);
+        burst = Arrays.copyOf(burst, grown);
+        priority = Arrays.copyOf(priority, grown);
+        remaining = Arrays.copyOf(remaining, grown);
+        quantum = Arrays.copyOf(quantum, grown);
+        history = Arrays.copyOf(history, grown);
+        historyLength = Arrays.copyOf(historyLength, grown);
+        pending.ensureCapacity(grown);
+    }
+}
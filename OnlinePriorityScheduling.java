@@ -0,0 +1,360 @@
+import java.util.*;
+
+/*
+ * Incremental form of PriorityScheduling for a live job feed.
+ * Jobs are submitted as they become known, advanceTo(t) simulates as far
+ * as the jobs arriving up to t allow, and dispatch segments and finished
+ * processes are handed to a listener as they happen. Per-process state
+ * lives in recycled slots, so memory follows the number of jobs in flight
+ * rather than the length of the run.
+ *
+ * The engine is the same loop as the batch scheduler, cut into stages at
+ * every point where it needs to know the arrivals up to some time. When a
+ * stage would look past the promised horizon, the engine stops there and
+ * resumes on the next advanceTo or finish. The running process keeps the
+ * CPU until the next arrival, aging step or completion, so it runs that
+ * whole stretch at once instead of tick by tick.
+ */
+public class OnlinePriorityScheduling {
+
+    private static final int TOP = 0;
+    private static final int PREDETERMINED = 1;
+    private static final int SWITCH = 2;
+    private static final int RECHECK = 3;
+    private static final int RUN = 4;
+    private static final int AFTER_FINISH = 5;
+
+    private final int contextSwitch;
+    private final int agingInterval;
+    private final SchedulerListener listener;
+    // Null when metrics are disabled; added to MetricsRegistry by finish()
+    public final SchedulerMetrics metrics = SchedulerMetrics.create();
+    public final LatencyStats latency = new LatencyStats();
+    // Optional, set before the first submit
+    public StarvationDetector starvation;
+
+    // Per-slot state
+    private final SlotPool slots = new SlotPool();
+    private int[] id = new int[16];
+    private int[] arrival = new int[16];
+    private int[] burst = new int[16];
+    private int[] priority = new int[16];
+    private int[] remaining = new int[16];
+    private String[] name = new String[16];
+
+    private final AgingReadyQueue readyQueue;
+    // Submitted but not yet arrived, by arrival then submission order
+    private final IndexedMinHeap pending;
+
+    private int submitted;
+    private int inFlight;
+    // Every job arriving at or before the horizon has been submitted
+    private long horizon = -1;
+
+    private int currentTime;
+    private int stage = TOP;
+    private int selected = -1;
+    private int nextSelected = -1;
+    private int preempted = -1;
+    private int currentProcess = -1;
+    private String lastName;
+    // The ready queue changed since selected was chosen, so it only gets one tick before a new look
+    private boolean stale;
+
+    // Dispatch segment still being extended
+    private int segmentId = -1;
+    private int segmentStart;
+    private int segmentEnd;
+
+    public OnlinePriorityScheduling(int contextSwitch, int agingInterval, SchedulerListener listener) {
+        this.contextSwitch = contextSwitch;
+        this.agingInterval = agingInterval;
+        this.listener = listener;
+        this.readyQueue = new AgingReadyQueue(agingInterval);
+        this.pending = new IndexedMinHeap(16, (a, b) -> arrival[a] != arrival[b]
+                ? Integer.compare(arrival[a], arrival[b])
+                : Integer.compare(id[a], id[b]));
+    }
+
+    /*
+     * Independent copy of the engine as it stands, reporting to listener
+     * from here on; the dispatch segment still being extended goes with it.
+     * Not supported with a starvation detector, whose state isn't copied.
+     */
+    OnlinePriorityScheduling copy(SchedulerListener listener) {
+        if (starvation != null) throw new IllegalStateException("A run with a starvation detector can't be copied");
+        OnlinePriorityScheduling copy = new OnlinePriorityScheduling(contextSwitch, agingInterval, listener);
+        if (metrics != null) {
+            copy.metrics.merge(metrics);
+            copy.metrics.runs = metrics.runs;
+        }
+        copy.latency.merge(latency);
+        copy.slots.copyFrom(slots);
+        copy.id = id.clone();
+        copy.arrival = arrival.clone();
+        copy.burst = burst.clone();
+        copy.priority = priority.clone();
+        copy.remaining = remaining.clone();
+        copy.name = name.clone();
+        copy.readyQueue.copyFrom(readyQueue);
+        copy.pending.copyFrom(pending);
+        copy.submitted = submitted;
+        copy.inFlight = inFlight;
+        copy.horizon = horizon;
+        copy.currentTime = currentTime;
+        copy.stage = stage;
+        copy.selected = selected;
+        copy.nextSelected = nextSelected;
+        copy.preempted = preempted;
+        copy.currentProcess = currentProcess;
+        copy.lastName = lastName;
+        copy.stale = stale;
+        copy.segmentId = segmentId;
+        copy.segmentStart = segmentStart;
+        copy.segmentEnd = segmentEnd;
+        return copy;
+    }
+
+    /*
+     * Adds a job and returns its id. Arrivals at or before a time already
+     * passed to advanceTo are rejected, since the engine may have moved on.
+     */
+    public int submit(String processName, int arrivalTime, int burstTime, int processPriority) {
+        if (arrivalTime <= horizon) {
+            throw new IllegalArgumentException("Arrival " + arrivalTime + " is not after the advanced time " + horizon);
+        }
+        int slot = slots.acquire();
+        ensureCapacity(slot + 1);
+        id[slot] = submitted;
+        arrival[slot] = arrivalTime;
+        burst[slot] = burstTime;
+        priority[slot] = processPriority;
+        remaining[slot] = burstTime;
+        name[slot] = processName;
+        pending.add(slot);
+        inFlight++;
+        return submitted++;
+    }
+
+    // Promises that every job arriving at or before time has been submitted, and simulates up to it
+    public void advanceTo(int time) {
+        horizon = Math.max(horizon, time);
+        step();
+    }
+
+    // No more jobs will come: runs everything left to completion
+    public void finish() {
+        horizon = Long.MAX_VALUE;
+        step();
+        closeSegment();
+        MetricsRegistry.record("priority", metrics);
+    }
+
+    public int currentTime() {
+        return currentTime;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    private void step() {
+        while (true) {
+            switch (stage) {
+                case TOP: {
+                    if (currentTime > horizon) return;
+                    admit(currentTime);
+
+                    if (readyQueue.isEmpty()) {
+                        // Idle time: nothing can happen before the next arrival
+                        if (pending.isEmpty()) return;
+                        int next = Math.max(currentTime, arrival[pending.peek()]);
+                        if (next > horizon) return;
+                        if (metrics != null) metrics.idleTicks += next - currentTime;
+                        currentTime = next;
+                        break;
+                    }
+
+                    // Select highest priority process
+                    selected = readyQueue.peek();
+                    if (metrics != null) metrics.queueDepth(readyQueue.size());
+
+                    // If a process just finished, nextSelected was pre-determined
+                    if (nextSelected >= 0 && nextSelected != selected) {
+                        stage = PREDETERMINED;
+                    } else {
+                        nextSelected = -1;
+                        stage = SWITCH;
+                    }
+                    break;
+                }
+                case PREDETERMINED: {
+                    // The predetermined process lost its place during the context switch
+                    if ((long) currentTime + contextSwitch > horizon) return;
+                    openSegment(nextSelected);
+
+                    // Context switch again and pick next process
+                    readyQueue.chargeWait(contextSwitch, -1);
+                    if (metrics != null) metrics.contextSwitches++;
+                    currentTime += contextSwitch;
+                    admit(currentTime);
+
+                    nextSelected = selected;
+                    selected = readyQueue.peek();
+                    if (nextSelected == selected) {
+                        nextSelected = -1;
+                        stage = SWITCH;
+                    }
+                    break;
+                }
+                case SWITCH: {
+                    // Context switching between different processes
+                    if (currentProcess < 0 || currentProcess == selected) {
+                        stage = RUN;
+                        break;
+                    }
+                    if ((long) currentTime + contextSwitch > horizon) return;
+                    if (metrics != null) {
+                        metrics.contextSwitches++;
+                        // currentProcess is cleared on completion, so it was still running
+                        metrics.priorityPreemptions++;
+                    }
+
+                    // A process that just arrived isn't charged for the switch
+                    readyQueue.chargeWait(contextSwitch, arrival[selected] == currentTime ? selected : -1);
+                    currentTime += contextSwitch;
+                    admit(currentTime);
+
+                    // Recheck after context switching
+                    int oldSelected = selected;
+                    selected = readyQueue.peek();
+                    if (selected != oldSelected) {
+                        preempted = oldSelected;
+                        stage = RECHECK;
+                    } else {
+                        stage = RUN;
+                    }
+                    break;
+                }
+                case RECHECK: {
+                    // Another process won during the switch, switch again
+                    if ((long) currentTime + contextSwitch > horizon) return;
+                    openSegment(preempted);
+
+                    readyQueue.chargeWait(contextSwitch, preempted);
+                    if (metrics != null) metrics.contextSwitches++;
+                    currentTime += contextSwitch;
+                    admit(currentTime);
+                    preempted = -1;
+                    stale = true;
+                    stage = RUN;
+                    break;
+                }
+                case RUN: {
+                    if ((long) currentTime + 1 > horizon) return;
+
+                    // Execute up to the next point where the choice could change
+                    currentProcess = selected;
+
+                    // Only start a new segment if it's a different process than last
+                    if (!name[selected].equals(lastName)) {
+                        openSegment(selected);
+                    }
+
+                    long end = Math.min((long) currentTime + remaining[selected], horizon);
+                    // Arrivals are never run past, so only the queued processes can be flagged on the way
+                    if (!pending.isEmpty()) end = Math.min(end, arrival[pending.peek()]);
+                    end = Math.min(end, (long) currentTime + readyQueue.untilAging());
+                    if (starvation != null) end = Math.min(end, starvation.nextCheck(Integer.MAX_VALUE));
+                    int ticks = stale ? 1 : (int) Math.max(1, end - currentTime);
+                    stale = false;
+
+                    // Increment waiting time for all except executing process
+                    readyQueue.chargeWait(ticks, selected);
+
+                    if (remaining[selected] == burst[selected]) latency.started(arrival[selected], currentTime);
+                    remaining[selected] -= ticks;
+                    currentTime += ticks;
+                    if (starvation != null) {
+                        starvation.ran(selected, ticks);
+                        starvation.check(currentTime);
+                    }
+                    segmentEnd = currentTime;
+
+                    // Check completion
+                    if (remaining[selected] == 0) {
+                        complete(selected);
+                        currentProcess = -1;
+                        admit(currentTime);
+
+                        // Determine next process before context switch
+                        nextSelected = readyQueue.peek();
+                        stage = AFTER_FINISH;
+                    } else {
+                        stage = TOP;
+                    }
+                    break;
+                }
+                case AFTER_FINISH: {
+                    if ((long) currentTime + contextSwitch > horizon) return;
+
+                    // Context switch after completion
+                    readyQueue.chargeWait(contextSwitch, -1);
+                    if (metrics != null) metrics.contextSwitches++;
+                    currentTime += contextSwitch;
+                    admit(currentTime);
+                    stage = TOP;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown stage " + stage);
+            }
+        }
+    }
+
+    private void admit(int time) {
+        while (!pending.isEmpty() && arrival[pending.peek()] <= time) {
+            int slot = pending.poll();
+            readyQueue.add(slot, priority[slot], arrival[slot], name[slot], id[slot]);
+            if (starvation != null) starvation.arrived(slot, id[slot], priority[slot], arrival[slot]);
+        }
+    }
+
+    private void complete(int slot) {
+        latency.completed(arrival[slot], burst[slot], currentTime);
+        if (starvation != null) starvation.completed(slot, currentTime - arrival[slot] - burst[slot]);
+        readyQueue.remove(slot);
+        listener.completed(id[slot], arrival[slot], burst[slot], currentTime, null);
+        name[slot] = null;
+        slots.release(slot);
+        inFlight--;
+    }
+
+    private void openSegment(int slot) {
+        closeSegment();
+        if (metrics != null) metrics.dispatches++;
+        segmentId = id[slot];
+        segmentStart = currentTime;
+        segmentEnd = currentTime;
+        lastName = name[slot];
+    }
+
+    private void closeSegment() {
+        if (segmentId >= 0) {
+            listener.dispatched(segmentId, segmentStart, segmentEnd);
+            segmentId = -1;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= id.length) return;
+        int grown = Math.max(capacity, id.length * 2);
+        id = Arrays.copyOf(id, grown);
+        arrival = Arrays.copyOf(arrival, grown);
+        burst = Arrays.copyOf(burst, grown);
+        priority = Arrays.copyOf(priority, grown);
+        remaining = Arrays.copyOf(remaining, grown);
+        name = Arrays.copyOf(name, grown);
+        pending.ensureCapacity(grown);
+    }
+}
@@ -0,0 +1,234 @@
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/*
+ * Runs one workload under many scheduler configurations in parallel.
+ * The table entry points only read the ProcessView and keep their state
+ * in per-run scratch arrays, so every worker shares the same loaded
+ * workload. Each run is reduced to a few numbers as soon as it finishes,
+ * which keeps memory flat however many configurations there are.
+ *
+ * With --cache, runs are looked up in and added to a ResultCache in that
+ * directory, so repeating a sweep only simulates the new configurations.
+ *
+ * Usage: java ParameterSweep <workload.json|.bin> [--threads n]
+ *            [--policies rr,sjf,priority,ag] [--quanta 1,2,4] [--switches 0,1,2] [--aging 1,5,10] [--top n]
+ *            [--cache dir] [--cache-mb n]
+ */
+public class ParameterSweep {
+
+    public static class Config {
+        public final String policy;
+        public final int rrQuantum;
+        public final int contextSwitch;
+        public final int agingInterval;
+
+        public Config(String policy, int rrQuantum, int contextSwitch, int agingInterval) {
+            this.policy = policy;
+            this.rrQuantum = rrQuantum;
+            this.contextSwitch = contextSwitch;
+            this.agingInterval = agingInterval;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Config)) return false;
+            Config c = (Config) o;
+            return policy.equals(c.policy) && rrQuantum == c.rrQuantum
+                    && contextSwitch == c.contextSwitch && agingInterval == c.agingInterval;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(policy, rrQuantum, contextSwitch, agingInterval);
+        }
+
+        @Override
+        public String toString() {
+            return policy + "(q=" + rrQuantum + ", cs=" + contextSwitch + ", aging=" + agingInterval + ")";
+        }
+    }
+
+    // What a sweep keeps from one run
+    public static class Outcome {
+        public Config config;
+        public double averageWaitingTime;
+        public double averageTurnaroundTime;
+        public double p99WaitingTime;
+        public double p99TurnaroundTime;
+        public int makespan;
+        public int dispatches;
+    }
+
+    /*
+     * Every combination of the given values. Settings a policy ignores are
+     * fixed at 0 so the same run isn't repeated: SJF only uses the context
+     * switch, RR adds the quantum, Priority adds the aging interval and AG
+     * takes its quanta from the workload.
+     */
+    public static List<Config> grid(String[] policies, int[] quanta, int[] switches, int[] aging) {
+        Set<Config> configs = new LinkedHashSet<>();
+        for (String policy : policies) {
+            for (int q : quanta) {
+                for (int cs : switches) {
+                    for (int a : aging) {
+                        switch (policy) {
+                            case "rr":
+                                configs.add(new Config(policy, q, cs, 0));
+                                break;
+                            case "sjf":
+                                configs.add(new Config(policy, 0, cs, 0));
+                                break;
+                            case "priority":
+                                configs.add(new Config(policy, 0, cs, a));
+                                break;
+                            case "ag":
+                                configs.add(new Config(policy, 0, 0, 0));
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Unknown policy " + policy);
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(configs);
+    }
+
+    // Runs every configuration on the pool; outcomes come back in configuration order
+    public static List<Outcome> run(ProcessView workload, List<Config> configs, ForkJoinPool pool)
+            throws InterruptedException, ExecutionException {
+        // Sorted and hashed once up front rather than by whichever worker gets there first
+        workload.arrivalOrder();
+        if (ResultCache.shared != null) workload.digest();
+        return pool.submit(() -> configs.parallelStream()
+                .map(config -> run(workload, config))
+                .collect(Collectors.toList())).get();
+    }
+
+    public static Outcome run(ProcessView workload, Config config) {
+        RunResult result;
+        switch (config.policy) {
+            case "rr":
+                result = RoundRobinSchedule.schedule(workload, config.rrQuantum, config.contextSwitch);
+                break;
+            case "sjf":
+                result = ShortestJobFirstProcess.schedule(workload, config.contextSwitch);
+                break;
+            case "priority":
+                result = new PriorityScheduling(config.contextSwitch, config.rrQuantum, config.agingInterval, workload).run();
+                break;
+            case "ag":
+                result = AGScheduler.runSchedule(workload);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy " + config.policy);
+        }
+
+        Outcome outcome = new Outcome();
+        outcome.config = config;
+        outcome.averageWaitingTime = result.averageWaitingTime;
+        outcome.averageTurnaroundTime = result.averageTurnaroundTime;
+        outcome.p99WaitingTime = percentile(result.waitingTime, 0.99);
+        outcome.p99TurnaroundTime = percentile(result.turnaroundTime, 0.99);
+        for (int finish : result.finishTime) outcome.makespan = Math.max(outcome.makespan, finish);
+        outcome.dispatches = result.timeline.size();
+        return outcome;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java ParameterSweep <workload.json|.bin> [--threads n] [--policies ..] "
+                    + "[--quanta ..] [--switches ..] [--aging ..] [--top n] [--cache dir] [--cache-mb n]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] policies = {"rr", "sjf", "priority", "ag"};
+        int[] quanta = {1, 2, 3, 4, 6, 8};
+        int[] switches = {0, 1, 2};
+        int[] aging = {1, 2, 5, 10, 20};
+        int top = 10;
+        String cacheDir = null;
+        long cacheBytes = ResultCache.DEFAULT_MAX_BYTES;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--policies":
+                    policies = args[i + 1].split(",");
+                    break;
+                case "--quanta":
+                    quanta = ints(args[i + 1]);
+                    break;
+                case "--switches":
+                    switches = ints(args[i + 1]);
+                    break;
+                case "--aging":
+                    aging = ints(args[i + 1]);
+                    break;
+                case "--top":
+                    top = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--cache":
+                    cacheDir = args[i + 1];
+                    break;
+                case "--cache-mb":
+                    cacheBytes = Long.parseLong(args[i + 1]) << 20;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        if (cacheDir != null) ResultCache.shared = new ResultCache(Paths.get(cacheDir), cacheBytes);
+        Workload workload = WorkloadLoader.load(args[0]);
+        List<Config> configs = grid(policies, quanta, switches, aging);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<Outcome> outcomes = run(workload.processes, configs, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d configurations x %d processes on %d threads in %.2f s%n",
+                configs.size(), workload.processes.size(), threads, seconds);
+        ResultCache cache = ResultCache.shared;
+        if (cache != null) {
+            System.out.printf("Cache: %d hits, %d misses, %d entries in %.1f MB%n",
+                    cache.hits(), cache.misses(), cache.size(), cache.bytes() / 1e6);
+        }
+
+        outcomes.sort(Comparator.comparingDouble((Outcome o) -> o.averageWaitingTime)
+                .thenComparingDouble(o -> o.averageTurnaroundTime));
+        System.out.printf("%-40s %12s %12s %10s %10s%n", "config", "avg wait", "avg tat", "makespan", "dispatches");
+        for (Outcome o : outcomes.subList(0, Math.min(top, outcomes.size()))) {
+            System.out.printf("%-40s %12.2f %12.2f %10d %10d%n", o.config, o.averageWaitingTime,
+                    o.averageTurnaroundTime, o.makespan, o.dispatches);
+        }
+
+        // Best configuration per policy
+        Map<String, Outcome> best = new LinkedHashMap<>();
+        for (Outcome o : outcomes) best.putIfAbsent(o.config.policy, o);
+        System.out.println();
+        for (Outcome o : best.values()) {
+            System.out.printf("Best %-8s %s, avg wait %.2f%n", o.config.policy, o.config, o.averageWaitingTime);
+        }
+    }
+
+    // Nearest-rank percentile, 0 for no values
+    static int percentile(int[] values, double p) {
+        if (values.length == 0) return 0;
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
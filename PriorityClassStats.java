@@ -0,0 +1,143 @@
+import java.util.*;
+
+/*
+ * Waiting and turnaround time per priority class of a finished run.
+ * One pass goes over the table's priority column next to the result's
+ * waiting and turnaround columns; classes are looked up by priority in a
+ * dense table, so the pass doesn't box, hash or allocate per row.
+ *
+ * Usage: java PriorityClassStats <workload.json|.bin> [--policy priority|ag] [--aging n]
+ *            [--multiple k] [--min-samples n]
+ */
+public class PriorityClassStats {
+
+    public static class PriorityClass {
+        public final int priority;
+        public long count;
+        public long totalWaitingTime;
+        public long totalTurnaroundTime;
+        public int maxWaitingTime;
+        public final LatencyHistogram waiting = new LatencyHistogram();
+        public final LatencyHistogram turnaround = new LatencyHistogram();
+
+        PriorityClass(int priority) {
+            this.priority = priority;
+        }
+
+        public double averageWaitingTime() {
+            return count == 0 ? 0 : (double) totalWaitingTime / count;
+        }
+
+        public double averageTurnaroundTime() {
+            return count == 0 ? 0 : (double) totalTurnaroundTime / count;
+        }
+    }
+
+    // By priority value, best first
+    public final List<PriorityClass> classes;
+
+    private PriorityClassStats(List<PriorityClass> classes) {
+        this.classes = classes;
+    }
+
+    public static PriorityClassStats of(RunResult run) {
+        return of(run.table, run.waitingTime, run.turnaroundTime);
+    }
+
+    public static PriorityClassStats of(ProcessView table, int[] waitingTime, int[] turnaroundTime) {
+        PriorityClasses index = new PriorityClasses();
+        PriorityClass[] byId = new PriorityClass[8];
+        int n = table.size();
+        for (int row = 0; row < n; row++) {
+            int id = index.of(table.priority(row));
+            if (id == byId.length) byId = Arrays.copyOf(byId, id * 2);
+            PriorityClass c = byId[id];
+            if (c == null) c = byId[id] = new PriorityClass(table.priority(row));
+
+            int wait = waitingTime[row];
+            int turnaround = turnaroundTime[row];
+            c.count++;
+            c.totalWaitingTime += wait;
+            c.totalTurnaroundTime += turnaround;
+            if (wait > c.maxWaitingTime) c.maxWaitingTime = wait;
+            c.waiting.record(wait);
+            c.turnaround.record(turnaround);
+        }
+
+        List<PriorityClass> classes = new ArrayList<>(Arrays.asList(byId).subList(0, index.size()));
+        classes.sort(Comparator.comparingInt(c -> c.priority));
+        return new PriorityClassStats(classes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(String.format("%8s %10s %10s %8s %8s %8s %10s %8s%n",
+                "priority", "processes", "avg wait", "p50", "p99", "max", "avg tat", "p99 tat"));
+        for (PriorityClass c : classes) {
+            out.append(String.format("%8d %10d %10.2f %8d %8d %8d %10.2f %8d%n", c.priority, c.count,
+                    c.averageWaitingTime(), c.waiting.percentile(0.5), c.waiting.percentile(0.99),
+                    c.maxWaitingTime, c.averageTurnaroundTime(), c.turnaround.percentile(0.99)));
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java PriorityClassStats <workload.json|.bin> [--policy priority|ag] "
+                    + "[--aging n] [--multiple k] [--min-samples n]");
+            System.exit(1);
+        }
+        Workload workload = WorkloadLoader.load(args[0]);
+        String policy = "priority";
+        int aging = workload.agingInterval;
+        double multiple = 10;
+        int minSamples = -1;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--policy":
+                    policy = args[i + 1];
+                    break;
+                case "--aging":
+                    aging = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--multiple":
+                    multiple = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--min-samples":
+                    minSamples = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        long[] flagged = new long[1];
+        StarvationDetector detector = new StarvationDetector(multiple, (id, priority, waited, median, time) -> {
+            if (flagged[0]++ < 10) {
+                System.out.printf("t=%d: process #%d (priority %d) has waited %d, class median %d%n",
+                        time, id, priority, waited, median);
+            }
+        });
+        if (minSamples >= 0) detector.minSamples = minSamples;
+
+        RunResult run;
+        switch (policy) {
+            case "priority":
+                PriorityScheduling scheduler = new PriorityScheduling(workload.contextSwitch, workload.rrQuantum,
+                        aging, workload.processes);
+                scheduler.starvation = detector;
+                run = scheduler.run();
+                break;
+            case "ag":
+                run = AGScheduler.runSchedule(workload.processes, detector);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+
+        if (flagged[0] > 10) System.out.printf("... %d flagged in all%n", flagged[0]);
+        System.out.println();
+        System.out.print(of(run));
+    }
+}
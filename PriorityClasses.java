@@ -0,0 +1,50 @@
+import java.util.Arrays;
+
+/*
+ * Dense ids for priority values, in the order they are first seen. Ids
+ * are found through a direct table over the range of priorities seen so
+ * far, which only grows when a new lowest or highest priority turns up.
+ */
+class PriorityClasses {
+    private static final int MAX_SPAN = 1 << 20;
+
+    private int low;
+    // id + 1 for each priority from low on, 0 for one not seen yet
+    private int[] ids = new int[0];
+    private int[] priorities = new int[8];
+    private int size;
+
+    int of(int priority) {
+        long i = (long) priority - low;
+        if (i >= 0 && i < ids.length) {
+            int id = ids[(int) i] - 1;
+            if (id >= 0) return id;
+        } else {
+            widen(priority);
+        }
+        if (size == priorities.length) priorities = Arrays.copyOf(priorities, size * 2);
+        priorities[size] = priority;
+        ids[priority - low] = size + 1;
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int priority(int id) {
+        return priorities[id];
+    }
+
+    private void widen(int priority) {
+        long newLow = size == 0 ? priority : Math.min(low, priority);
+        long newHigh = size == 0 ? priority : Math.max((long) low + ids.length - 1, priority);
+        if (newHigh - newLow + 1 > MAX_SPAN) {
+            throw new IllegalArgumentException("Priorities span more than " + MAX_SPAN + " values");
+        }
+        int[] wider = new int[(int) (newHigh - newLow + 1)];
+        if (size > 0) System.arraycopy(ids, 0, wider, (int) (low - newLow), ids.length);
+        ids = wider;
+        low = (int) newLow;
+    }
+}
@@ -18,9 +18,13 @@ class Process implements Comparable<Process> {
     }
 
     public int getEffectivePriority(int agingInterval) {
-        if (agingInterval == 0) return Priority;
-        int agingBonus = CumulativeWaitTime / agingInterval;
-        int effectivePriority = Priority - agingBonus;
+        return effectivePriority(Priority, CumulativeWaitTime, agingInterval);
+    }
+
+    static int effectivePriority(int priority, int cumulativeWaitTime, int agingInterval) {
+        if (agingInterval == 0) return priority;
+        int agingBonus = cumulativeWaitTime / agingInterval;
+        int effectivePriority = priority - agingBonus;
         return Math.max(1, effectivePriority);  // Minimum priority is 1
     }
 
@@ -32,10 +36,12 @@ class Process implements Comparable<Process> {
 
 class SchedulerOutput {
     List<String> ExecutionOrder = new ArrayList<>();
+    Timeline ExecutionTimeline;
     List<Integer> WaitingTime = new ArrayList<>();
     List<Integer> TurnaroundTime = new ArrayList<>();
     double AverageWaitingTime;
     double AverageTurnaroundTime;
+    LatencyStats Latency;
 
     public SchedulerOutput() {}
 }
@@ -45,7 +51,8 @@ class PriorityScheduling {
     int rrQuantum;
     int agingInterval;
     ArrayList<Process> incomingJobs;
-    ArrayList<Process> readyQueue = new ArrayList<>();
+    ProcessView table;
+    StarvationDetector starvation;
 
     public PriorityScheduling(int contextSwitch, int rrQuantum, int agingInterval, ArrayList<Process> processes) {
         this.contextSwitch = contextSwitch;
@@ -53,189 +60,50 @@ class PriorityScheduling {
         this.agingInterval = agingInterval;
         this.incomingJobs = new ArrayList<>(processes);
         this.incomingJobs.sort(Comparator.comparingInt(p -> p.ArrivalTime));
-    }
-
-    private Process getHighestPriority(ArrayList<Process> queue) {
-        if (queue.isEmpty()) return null;
-
-        Process selected = null;
-        int bestEffectivePriority = Integer.MAX_VALUE;
-
-        for (Process p : queue) {
-            int effectivePriority = p.getEffectivePriority(agingInterval);
-
-            if (selected == null) {
-                selected = p;
-                bestEffectivePriority = effectivePriority;
-            } else if (effectivePriority < bestEffectivePriority) {
-                selected = p;
-                bestEffectivePriority = effectivePriority;
-            } else if (effectivePriority == bestEffectivePriority) {
-                // Tie in effective priority - compare arrival time
-                if (p.ArrivalTime < selected.ArrivalTime) {
-                    selected = p;
-                } else if (p.ArrivalTime == selected.ArrivalTime) {
-                    // Tie in arrival time - compare names
-                    if (p.Name.compareTo(selected.Name) < 0) {
-                        selected = p;
-                    }
-                }
-            }
-        }
-        return selected;
-    }
-
-    private void addArrivingProcesses(ArrayList<Process> completed, int currentTime) {
-        while (!incomingJobs.isEmpty() && incomingJobs.get(0).ArrivalTime <= currentTime) {
-            Process p = incomingJobs.remove(0);
-            if (!completed.contains(p)) {
-                readyQueue.add(p);
-            }
-        }
-    }
-
-    private void contextSwitchTime(ArrayList<Process> completed, int currentTime) {
-        // Age all processes in ready queue
-        for (Process p : readyQueue) {
-            p.CumulativeWaitTime += contextSwitch;
+        ProcessTable table = new ProcessTable(incomingJobs.size());
+        for (Process p : incomingJobs) {
+            table.add(p.Name, p.ArrivalTime, p.OriginalBurstTime, p.Priority, 0);
         }
-        currentTime += contextSwitch;
-        // Check for arrivals during/after context switch
-        addArrivingProcesses(completed, currentTime);
-        return;
+        this.table = table;
     }
 
-    private void ageReadyQueue(Process executing, int time) {
-        for (Process p : readyQueue) {
-            if (p != executing) {
-                p.CumulativeWaitTime += time;
-            }
-        }
+    public PriorityScheduling(int contextSwitch, int rrQuantum, int agingInterval, ProcessView table) {
+        this.contextSwitch = contextSwitch;
+        this.rrQuantum = rrQuantum;
+        this.agingInterval = agingInterval;
+        this.incomingJobs = new ArrayList<>();
+        this.table = table;
     }
 
     public SchedulerOutput exec() {
+        RunResult run = run();
         SchedulerOutput output = new SchedulerOutput();
-        int currentTime = 0;
-        ArrayList<Process> completed = new ArrayList<>();
-        Process currentProcess = null;
-        Process nextSelected = null;
+        output.ExecutionOrder = run.executionOrder;
+        output.ExecutionTimeline = run.timeline;
+        output.Latency = run.latency;
+
+        // Rows of incomingJobs line up with the table rows
+        for (int i = 0; i < incomingJobs.size(); i++) {
+            Process p = incomingJobs.get(i);
+            p.BurstTime = 0;
+        }
 
         Map<String, Integer> completionTimes = new HashMap<>();
         Map<String, Integer> arrivalTimes = new HashMap<>();
         Map<String, Integer> burstTimes = new HashMap<>();
 
         // Store original data
-        for (Process p : incomingJobs) {
-            arrivalTimes.put(p.Name, p.ArrivalTime);
-            burstTimes.put(p.Name, p.OriginalBurstTime);
-        }
-        for (Process p : readyQueue) {
-            arrivalTimes.put(p.Name, p.ArrivalTime);
-            burstTimes.put(p.Name, p.OriginalBurstTime);
+        for (int row = 0; row < table.size(); row++) {
+            arrivalTimes.put(table.name(row), table.arrival(row));
+            burstTimes.put(table.name(row), table.burst(row));
         }
 
-        while (completed.size() < arrivalTimes.size()) {
-            // Add arriving processes at current time
-            addArrivingProcesses(completed, currentTime);
-
-            // Select highest priority process
-            if (!readyQueue.isEmpty()) {
-                Process selected = getHighestPriority(readyQueue);
-
-                // If a process just finished, nextSelected was pre-determined
-                if (nextSelected != null) {
-                    // Check if predetermined process is still highest priority after context switch
-                    while (nextSelected != selected) {
-                        output.ExecutionOrder.add(nextSelected.Name);
-
-                        // Context switch again and pick next process
-                        for (Process p : readyQueue) {
-                            p.CumulativeWaitTime += contextSwitch;
-                        }
-                        currentTime += contextSwitch;
-                        addArrivingProcesses(completed, currentTime);
-
-                        nextSelected = selected;
-                        selected = getHighestPriority(readyQueue);
-                    }
-                }
-                nextSelected = null;
-
-                // Context switching between different processes
-                if (currentProcess != null && currentProcess != selected) {
-                    // Special case: process just arrived
-                    if (selected.ArrivalTime == currentTime) {
-                        // Don't count context switch time for the just-arrived process
-                        for (Process p : readyQueue) {
-                            if (p != selected) {
-                                p.CumulativeWaitTime += contextSwitch;
-                            }
-                        }
-                        currentTime += contextSwitch;
-                        addArrivingProcesses(completed, currentTime);
-                    } else {
-                        // Regular context switch
-                        for (Process p : readyQueue) {
-                            p.CumulativeWaitTime += contextSwitch;
-                        }
-                        currentTime += contextSwitch;
-                        addArrivingProcesses(completed, currentTime);
-                    }
-
-                    // Recheck after context switching
-                    Process oldSelected = selected;
-                    selected = getHighestPriority(readyQueue);
-                    if (selected != oldSelected) {
-                        output.ExecutionOrder.add(oldSelected.Name);
-
-                        for (Process p : readyQueue) {
-                            if (p != oldSelected) {
-                                p.CumulativeWaitTime += contextSwitch;
-                            }
-                        }
-                        currentTime += contextSwitch;
-                        addArrivingProcesses(completed, currentTime);
-                    }
-                }
-
-                // Execute for 1 time unit
-                currentProcess = selected;
-
-                // Only add to execution order if it's a different process than last
-                if (output.ExecutionOrder.isEmpty() ||
-                        !output.ExecutionOrder.get(output.ExecutionOrder.size() - 1).equals(selected.Name)) {
-                    output.ExecutionOrder.add(selected.Name);
-                }
-
-                // Increment waiting time for all except executing process
-                ageReadyQueue(selected, 1);
-
-                selected.BurstTime--;
-                currentTime++;
-
-                // Check completion
-                if (selected.BurstTime == 0) {
-                    completionTimes.put(selected.Name, currentTime);
-                    completed.add(selected);
-                    readyQueue.remove(selected);
-                    addArrivingProcesses(completed, currentTime);
-
-                    // Determine next process before context switch
-                    nextSelected = getHighestPriority(readyQueue);
-
-                    // Context switch after completion
-                    for (Process p : readyQueue) {
-                        p.CumulativeWaitTime += contextSwitch;
-                    }
-                    currentTime += contextSwitch;
-                    addArrivingProcesses(completed, currentTime);
-
-                    currentProcess = null;
-                }
-            } else {
-                // Idle time
-                currentTime++;
-            }
+        // Completion times go in the order processes finished
+        Integer[] byFinish = new Integer[table.size()];
+        for (int row = 0; row < byFinish.length; row++) byFinish[row] = row;
+        Arrays.sort(byFinish, Comparator.comparingInt(row -> run.finishTime[row]));
+        for (int row : byFinish) {
+            completionTimes.put(table.name(row), run.finishTime[row]);
         }
 
         // Calculate results
@@ -251,4 +119,42 @@ class PriorityScheduling {
 
         return output;
     }
-}
\ No newline at end of file
+
+    // Cached unless a starvation detector has to see the run
+    public RunResult run() {
+        if (starvation != null) return simulate();
+        return ResultCache.cached("priority", table, new int[]{contextSwitch, agingInterval}, this::simulate);
+    }
+
+    private RunResult simulate() {
+        int n = table.size();
+        int[] rows = table.arrivalOrder();
+        int[] finish = new int[n];
+        Timeline timeline = new Timeline(table);
+
+        // Ids handed out by the online engine follow submission order, i.e. positions in rows
+        OnlinePriorityScheduling engine = new OnlinePriorityScheduling(contextSwitch, agingInterval,
+                new SchedulerListener() {
+                    @Override
+                    public void dispatched(int id, int start, int end) {
+                        timeline.open(rows[id], start);
+                        timeline.extend(end);
+                    }
+
+                    @Override
+                    public void completed(int id, int arrival, int burst, int finishTime, int[] quantumHistory) {
+                        finish[rows[id]] = finishTime;
+                    }
+                });
+        engine.starvation = starvation;
+        for (int row : rows) {
+            engine.submit(table.name(row), table.arrival(row), table.burst(row), table.priority(row));
+        }
+        engine.finish();
+
+        RunResult result = new RunResult(table, timeline, finish);
+        result.metrics = engine.metrics;
+        result.latency = engine.latency;
+        return result;
+    }
+}
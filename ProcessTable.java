@@ -0,0 +1,109 @@
+import java.util.*;
+
+/*
+ * Workload stored column by column: one primitive array per attribute
+ * instead of one object per process. Names are interned into a dictionary
+ * and referenced by id, so repeated names cost nothing and can be compared
+ * with ==. Schedulers only read from a table, through ProcessView, which
+ * lets one loaded workload be run under several policies.
+ */
+public class ProcessTable extends ProcessView {
+    private int size;
+    private int[] arrival;
+    private int[] burst;
+    private int[] priority;
+    private int[] quantum;
+    private int[] nameId;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    public ProcessTable() {
+        this(16);
+    }
+
+    public ProcessTable(int capacity) {
+        capacity = Math.max(1, capacity);
+        arrival = new int[capacity];
+        burst = new int[capacity];
+        priority = new int[capacity];
+        quantum = new int[capacity];
+        nameId = new int[capacity];
+    }
+
+    // Appends a process and returns its row
+    public int add(String name, int arrivalTime, int burstTime, int priorityLevel, int initialQuantum) {
+        if (size == arrival.length) grow();
+        arrival[size] = arrivalTime;
+        burst[size] = burstTime;
+        priority[size] = priorityLevel;
+        quantum[size] = initialQuantum;
+        nameId[size] = intern(name);
+        changed();
+        return size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int arrival(int row) {
+        return arrival[row];
+    }
+
+    @Override
+    public int burst(int row) {
+        return burst[row];
+    }
+
+    @Override
+    public int priority(int row) {
+        return priority[row];
+    }
+
+    @Override
+    public int quantum(int row) {
+        return quantum[row];
+    }
+
+    @Override
+    public int nameId(int row) {
+        return nameId[row];
+    }
+
+    @Override
+    public String name(int row) {
+        return names.get(nameId[row]);
+    }
+
+    @Override
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    @Override
+    public int nameCount() {
+        return names.size();
+    }
+
+    private int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    private void grow() {
+        int capacity = arrival.length << 1;
+        arrival = Arrays.copyOf(arrival, capacity);
+        burst = Arrays.copyOf(burst, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        quantum = Arrays.copyOf(quantum, capacity);
+        nameId = Arrays.copyOf(nameId, capacity);
+    }
+}
@@ -0,0 +1,113 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*
+ * Read-only access to a workload, row by row: what every scheduler takes.
+ * Each name has an id in the table's dictionary, and a given id always
+ * returns the same String, so names from one table can be compared with
+ * ==. ProcessTable is the in-memory implementation that workloads are
+ * built in; other implementations read their rows from elsewhere, such
+ * as a mapped file.
+ */
+public abstract class ProcessView {
+
+    private volatile int[] arrivalOrder;
+    private volatile byte[] digest;
+
+    public abstract int size();
+
+    public abstract int arrival(int row);
+
+    public abstract int burst(int row);
+
+    public abstract int priority(int row);
+
+    public abstract int quantum(int row);
+
+    public abstract int nameId(int row);
+
+    public abstract String nameOf(int id);
+
+    public abstract int nameCount();
+
+    public String name(int row) {
+        return nameOf(nameId(row));
+    }
+
+    /*
+     * Rows sorted by arrival time, ties kept in insertion order.
+     * This is the order every scheduler walks arrivals in.
+     */
+    public int[] arrivalOrder() {
+        int[] order = arrivalOrder;
+        if (order != null) return order;
+
+        int n = size();
+        order = new int[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            if (i > 0 && arrival(i) < arrival(i - 1)) sorted = false;
+        }
+        if (!sorted) {
+            // arrival in the high half, row in the low half: a plain sort is stable
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = ((long) arrival(i) << 32) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < n; i++) {
+                order[i] = (int) keys[i];
+            }
+        }
+        arrivalOrder = order;
+        return order;
+    }
+
+    /*
+     * SHA-256 of the rows in insertion order, names included, so equal
+     * content gives an equal digest however the table was loaded. Worked
+     * out once and kept until the rows change; callers must not modify it.
+     */
+    public byte[] digest() {
+        byte[] d = digest;
+        if (d != null) return d;
+
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        int n = size();
+        ByteBuffer buffer = ByteBuffer.allocate(20 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(n);
+        for (int row = 0; row < n; row++) {
+            if (buffer.remaining() < 20) {
+                sha.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            buffer.putInt(arrival(row)).putInt(burst(row)).putInt(priority(row)).putInt(quantum(row)).putInt(nameId(row));
+        }
+        sha.update(buffer.array(), 0, buffer.position());
+        // Ids follow first appearance, so the dictionary in id order completes the content
+        for (int id = 0; id < nameCount(); id++) {
+            byte[] bytes = nameOf(id).getBytes(StandardCharsets.UTF_8);
+            sha.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.length).array());
+            sha.update(bytes);
+        }
+        d = sha.digest();
+        digest = d;
+        return d;
+    }
+
+    // For implementations whose rows can change: drops the cached arrival order and digest
+    protected void changed() {
+        arrivalOrder = null;
+        digest = null;
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Quantum history of every process kept in one flat log.
+ * Entries of the same row are chained through next[], so recording a
+ * change never allocates per process.
+ */
+class QuantumHistory {
+    private final int[] head;
+    private final int[] tail;
+    private int[] value;
+    private int[] next;
+    private int count;
+
+    public QuantumHistory(int rows) {
+        head = new int[rows];
+        tail = new int[rows];
+        Arrays.fill(head, -1);
+        value = new int[Math.max(4, rows * 2)];
+        next = new int[value.length];
+    }
+
+    public void append(int row, int quantum) {
+        if (count == value.length) {
+            value = Arrays.copyOf(value, count * 2);
+            next = Arrays.copyOf(next, count * 2);
+        }
+        value[count] = quantum;
+        next[count] = -1;
+        if (head[row] < 0) head[row] = count;
+        else next[tail[row]] = count;
+        tail[row] = count;
+        count++;
+    }
+
+    public List<Integer> of(int row) {
+        List<Integer> history = new ArrayList<>();
+        for (int e = head[row]; e >= 0; e = next[e])
+            history.add(value[e]);
+        return history;
+    }
+}
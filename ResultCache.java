@@ -0,0 +1,444 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * On-disk cache of finished runs, keyed by content: SHA-256 of the
+ * workload's digest, the policy name and its parameters. A hit rebuilds
+ * the RunResult (timeline, finish times, AG quantum history, metrics and
+ * latency histograms) without simulating. Hits don't add to
+ * MetricsRegistry, since nothing ran.
+ *
+ * Each entry is one file, <key>.run: a fixed header, then a payload of
+ * varints, deflated:
+ *   header   magic, version, stored and inflated payload length, CRC32 of
+ *            the stored payload (ints), then the 32-byte key
+ *   payload  rows, segments, flags; per row the waiting time; per segment
+ *            the row and the start as deltas from the last segment, and the
+ *            length; then the optional quantum history and metrics, and the
+ *            three latency histograms
+ * A file that doesn't check out is dropped and counts as a miss.
+ *
+ * The total size of the files is kept under maxBytes by evicting the
+ * least recently used. Recency is the file's modification time, which a
+ * hit updates, so it carries over from one JVM to the next.
+ *
+ * Engines look in the shared cache, which is off unless
+ * -Dscheduler.cache=<directory> is given (-Dscheduler.cache.maxBytes sets
+ * the bound, 256 MB by default), or a tool sets it. Code that must time
+ * or check the engines themselves runs them inside uncached().
+ */
+public class ResultCache {
+
+    static final int MAGIC = 0x4E555253; // "SRUN"
+    // Bump when an engine's output changes, so old entries stop matching
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20 + 32;
+    static final String SUFFIX = ".run";
+
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    // Checked by every engine entry point; null when caching is off
+    public static volatile ResultCache shared = fromProperties();
+
+    // Set on threads inside uncached()
+    private static final ThreadLocal<Boolean> bypass = ThreadLocal.withInitial(() -> false);
+
+    public final Path directory;
+    public final long maxBytes;
+
+    // File name to size, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        Map<Path, FileTime> modified = new HashMap<>();
+        for (Path file : files) modified.put(file, Files.getLastModifiedTime(file));
+        files.sort(Comparator.comparing(modified::get));
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    private static ResultCache fromProperties() {
+        String dir = System.getProperty("scheduler.cache");
+        if (dir == null || dir.isEmpty()) return null;
+        long max = Long.getLong("scheduler.cache.maxBytes", DEFAULT_MAX_BYTES);
+        try {
+            return new ResultCache(Paths.get(dir), max);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * The run of policy with the given parameters over table, from the
+     * shared cache if it is on and has it, otherwise from engine (and then
+     * stored). Parameters must cover everything the result depends on.
+     */
+    static RunResult cached(String policy, ProcessView table, int[] parameters, Supplier<RunResult> engine) {
+        ResultCache cache = shared;
+        if (cache == null || bypass.get()) return engine.get();
+        byte[] key = key(table, policy, parameters);
+        RunResult result = cache.get(key, table);
+        if (result == null) {
+            result = engine.get();
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    // Runs work with the engines it calls on this thread skipping the shared cache, whatever it is set to
+    public static <T> T uncached(Supplier<T> work) {
+        if (bypass.get()) return work.get();
+        bypass.set(true);
+        try {
+            return work.get();
+        } finally {
+            bypass.set(false);
+        }
+    }
+
+    public static byte[] key(ProcessView table, String policy, int... parameters) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] name = policy.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + name.length + 4 * parameters.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(VERSION).putInt(name.length).put(name).putInt(parameters.length);
+        for (int p : parameters) buffer.putInt(p);
+        sha.update(table.digest());
+        sha.update(buffer.array());
+        return sha.digest();
+    }
+
+    public RunResult get(byte[] key, ProcessView table) {
+        String file = fileName(key);
+        synchronized (this) {
+            if (!entries.containsKey(file)) {
+                misses++;
+                return null;
+            }
+        }
+        Path path = directory.resolve(file);
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            RunResult result = decode(bytes, key, table);
+            if (result != null) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                synchronized (this) {
+                    entries.get(file);
+                    hits++;
+                }
+                return result;
+            }
+        } catch (IOException e) {
+            // Evicted by another process, or unreadable: a miss either way
+        }
+        synchronized (this) {
+            misses++;
+            remove(file);
+        }
+        return null;
+    }
+
+    public void put(byte[] key, RunResult result) {
+        byte[] bytes = encode(key, result);
+        if (bytes.length > maxBytes) return;
+        String file = fileName(key);
+        Path temp = null;
+        try {
+            // Written aside and moved in, so a reader never sees half a file
+            temp = Files.createTempFile(directory, "run", ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, directory.resolve(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Caching is best effort
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // nothing more to do
+            }
+            return;
+        }
+        synchronized (this) {
+            Long old = entries.put(file, (long) bytes.length);
+            totalBytes += bytes.length - (old == null ? 0 : old);
+            evict();
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            totalBytes -= eldest.getValue();
+            it.remove();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                // Left for the next start to find
+            }
+        }
+    }
+
+    private void remove(String file) {
+        Long size = entries.remove(file);
+        if (size != null) totalBytes -= size;
+        try {
+            Files.deleteIfExists(directory.resolve(file));
+        } catch (IOException e) {
+            // Left for the next start to find
+        }
+    }
+
+    private static String fileName(byte[] key) {
+        StringBuilder hex = new StringBuilder(key.length * 2 + SUFFIX.length());
+        for (byte b : key) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.append(SUFFIX).toString();
+    }
+
+    static byte[] encode(byte[] key, RunResult result) {
+        ProcessView table = result.table;
+        Timeline timeline = result.timeline;
+        int n = table.size();
+        Output out = new Output(n * 2 + timeline.size() * 4 + 64);
+        out.writeVarInt(n);
+        out.writeVarInt(timeline.size());
+        int flags = (result.quantumHistory != null ? 1 : 0) | (result.metrics != null ? 2 : 0) | (result.latency != null ? 4 : 0);
+        out.writeVarInt(flags);
+
+        for (int row = 0; row < n; row++) out.writeSignedVarInt(result.waitingTime[row]);
+        int lastRow = 0;
+        int lastEnd = 0;
+        for (int s = 0; s < timeline.size(); s++) {
+            out.writeSignedVarInt(timeline.row(s) - lastRow);
+            out.writeSignedVarInt(timeline.start(s) - lastEnd);
+            out.writeVarInt(timeline.end(s) - timeline.start(s));
+            lastRow = timeline.row(s);
+            lastEnd = timeline.end(s);
+        }
+
+        if (result.quantumHistory != null) {
+            for (int row = 0; row < n; row++) {
+                List<Integer> history = result.quantumHistory.of(row);
+                out.writeVarInt(history.size());
+                for (int q : history) out.writeSignedVarInt(q);
+            }
+        }
+        if (result.metrics != null) {
+            SchedulerMetrics m = result.metrics;
+            for (long v : new long[]{m.runs, m.dispatches, m.contextSwitches, m.priorityPreemptions,
+                    m.shortestJobPreemptions, m.quantumExpiries, m.idleTicks, m.queueDepthTotal}) {
+                out.writeVarLong(v);
+            }
+            for (long v : m.queueDepth) out.writeVarLong(v);
+        }
+        if (result.latency != null) {
+            result.latency.waiting.write(out);
+            result.latency.turnaround.write(out);
+            result.latency.response.write(out);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(out.bytes, 0, out.size);
+        deflater.finish();
+        byte[] file = new byte[HEADER_SIZE + out.size + 64];
+        int stored = 0;
+        while (!deflater.finished()) {
+            if (HEADER_SIZE + stored == file.length) file = Arrays.copyOf(file, file.length * 2);
+            stored += deflater.deflate(file, HEADER_SIZE + stored, file.length - HEADER_SIZE - stored);
+        }
+        deflater.end();
+
+        CRC32 crc = new CRC32();
+        crc.update(file, HEADER_SIZE, stored);
+        ByteBuffer header = ByteBuffer.wrap(file, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(stored).putInt(out.size).putInt((int) crc.getValue()).put(key);
+        return Arrays.copyOf(file, HEADER_SIZE + stored);
+    }
+
+    // Null if the bytes aren't an intact entry for this key and table
+    static RunResult decode(byte[] bytes, byte[] key, ProcessView table) {
+        if (bytes.length < HEADER_SIZE) return null;
+        ByteBuffer header = ByteBuffer.wrap(bytes, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) return null;
+        int stored = header.getInt();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (stored != bytes.length - HEADER_SIZE || length < 0) return null;
+        if (!Arrays.equals(Arrays.copyOfRange(bytes, 20, HEADER_SIZE), key)) return null;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, stored);
+        if ((int) crc.getValue() != checksum) return null;
+
+        byte[] payload = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, HEADER_SIZE, stored);
+            if (inflater.inflate(payload) != length || !inflater.finished()) return null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+
+        try {
+            Input in = new Input(payload, 0);
+            int n = in.readVarInt();
+            if (n != table.size()) return null;
+            int segments = in.readVarInt();
+            int flags = in.readVarInt();
+
+            int[] finish = new int[n];
+            for (int row = 0; row < n; row++) {
+                finish[row] = table.arrival(row) + table.burst(row) + in.readSignedVarInt();
+            }
+            Timeline timeline = new Timeline(table);
+            int row = 0;
+            int end = 0;
+            for (int s = 0; s < segments; s++) {
+                row += in.readSignedVarInt();
+                int start = end + in.readSignedVarInt();
+                end = start + in.readVarInt();
+                timeline.open(row, start);
+                timeline.extend(end);
+            }
+            RunResult result = new RunResult(table, timeline, finish);
+
+            if ((flags & 1) != 0) {
+                QuantumHistory history = new QuantumHistory(n);
+                for (int r = 0; r < n; r++) {
+                    int count = in.readVarInt();
+                    for (int i = 0; i < count; i++) history.append(r, in.readSignedVarInt());
+                }
+                result.quantumHistory = history;
+            }
+            if ((flags & 2) != 0) {
+                SchedulerMetrics m = new SchedulerMetrics();
+                m.runs = in.readVarLong();
+                m.dispatches = in.readVarLong();
+                m.contextSwitches = in.readVarLong();
+                m.priorityPreemptions = in.readVarLong();
+                m.shortestJobPreemptions = in.readVarLong();
+                m.quantumExpiries = in.readVarLong();
+                m.idleTicks = in.readVarLong();
+                m.queueDepthTotal = in.readVarLong();
+                for (int i = 0; i < m.queueDepth.length; i++) m.queueDepth[i] = in.readVarLong();
+                if (SchedulerMetrics.ENABLED) result.metrics = m;
+            }
+            if ((flags & 4) != 0) {
+                LatencyStats latency = new LatencyStats();
+                latency.waiting.merge(LatencyHistogram.read(in));
+                latency.turnaround.merge(LatencyHistogram.read(in));
+                latency.response.merge(LatencyHistogram.read(in));
+                result.latency = latency;
+            }
+            return in.position == length ? result : null;
+        } catch (RuntimeException e) {
+            // Bad counts or rows in a file that passed the checksum: treat it as foreign
+            return null;
+        }
+    }
+
+    // Growable buffer of LEB128 varints; signed values are zigzag encoded
+    static class Output {
+        byte[] bytes;
+        int size;
+
+        Output(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeVarLong(long v) {
+            if (size + 10 > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + 10));
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeSignedVarInt(int v) {
+            writeVarInt((v << 1) ^ (v >> 31));
+        }
+    }
+
+    static class Input {
+        final byte[] bytes;
+        int position;
+
+        Input(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IllegalStateException("Malformed varint");
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        int readSignedVarInt() {
+            int v = readVarInt();
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
@@ -1,6 +1,4 @@
 import java.util.*;
-import java.util.LinkedList;
-import java.util.Queue;
 
 public class RoundRobinProcess {
 
@@ -76,9 +74,11 @@ public class RoundRobinProcess {
 class RoundRobinResult {
     //excution order
     private List<String> excutionOrder;//order of p excution
+    private Timeline timeline;//when each dispatch ran
     private List<RoundRobinProcess> processes;//final state
     private double avgWaitTime;// avg waiting
     private double avgTaTime;// avg turnaround
+    private LatencyStats latency;// tail latencies
 
     public RoundRobinResult(List<String> excutionOrder, List<RoundRobinProcess> processes) {
         this.excutionOrder = excutionOrder;
@@ -92,6 +92,22 @@ class RoundRobinResult {
         return excutionOrder;
     }
 
+    public Timeline getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(Timeline timeline) {
+        this.timeline = timeline;
+    }
+
+    public LatencyStats getLatency() {
+        return latency;
+    }
+
+    public void setLatency(LatencyStats latency) {
+        this.latency = latency;
+    }
+
     public void setExcutionOrder(List<String> excutionOrder) {
         this.excutionOrder = excutionOrder;
     }
@@ -149,85 +165,66 @@ class RoundRobinSchedule{
             List<RoundRobinProcess>processList,
             int quantum,
             int contextSwitchTime){
-        Queue<RoundRobinProcess> queue = new LinkedList<>();
-        List<String>excutionOrder = new ArrayList<>();
+        processList.sort(Comparator.comparing(RoundRobinProcess::getArrTime));
 
+        ProcessTable table = new ProcessTable(processList.size());
+        for (RoundRobinProcess p : processList) {
+            table.add(p.getName(), p.getArrTime(), p.getBurstTime(), 0, quantum);
+        }
 
-        int currentTime = 0;
-        int completed=0;
-        int n= processList.size();
-        int i=0;
+        RunResult run = schedule(table, quantum, contextSwitchTime);
 
-        processList.sort(Comparator.comparing(RoundRobinProcess::getArrTime));
-
-        String lastProcessName="";
-
-        while (completed<n){
-            while(i<n&&processList.get(i).getArrTime()<= currentTime){
-                queue.add(processList.get(i));
-                i++;
-            }
-            //if no process is ready , cpu idle
-            if(queue.isEmpty()){
-                currentTime++;
-                continue;
-            }
-            RoundRobinProcess current=queue.poll();
-            if(!lastProcessName.isEmpty()&&!lastProcessName.equals(current.getName())){
-                currentTime+=contextSwitchTime;
-            }
-
-            int exTime=Math.min(quantum,current.getRemainingTime());
-
-            for(int m=0;m<exTime;m++) {
-                if (excutionOrder.isEmpty() || !excutionOrder.get(excutionOrder.size() - 1).equals(current.getName())) {
-                    excutionOrder.add(current.getName());
-                }
-
-                currentTime++;
-                current.setRemainingTime(current.getRemainingTime() - 1);
-
-
-                while (i < n && processList.get(i).getArrTime() <= currentTime) {
-                    queue.add(processList.get(i));
-                    i++;
-                }
-            }
-            if (current.isCompleted()){
-                completed++;
-                current.setCompletionTime(currentTime);
-                current.setTaTime(current.getCompletionTime()-current.getArrTime());
-                current.setWaitTime(current.getTaTime()-current.getBurstTime());
-            }
-            else{ queue.add(current); }
-
-            lastProcessName=current.getName();
+        //copy final state back onto the processes
+        for (int k = 0; k < processList.size(); k++) {
+            RoundRobinProcess current = processList.get(k);
+            current.setRemainingTime(0);
+            current.setCompletionTime(run.finishTime[k]);
+            current.setTaTime(run.turnaroundTime[k]);
+            current.setWaitTime(run.waitingTime[k]);
         }
 
 //creates obj of result and calc average
-        RoundRobinResult result=new RoundRobinResult(excutionOrder,processList);
+        RoundRobinResult result=new RoundRobinResult(run.executionOrder,processList);
+        result.setTimeline(run.timeline);
+        result.setLatency(run.latency);
         result.calcAvgWaitTime();
         return result;}
 
+    public static RunResult schedule(ProcessView table, int quantum, int contextSwitchTime){
+        return ResultCache.cached("rr", table, new int[]{quantum, contextSwitchTime},
+                () -> new SimulationKernel(table, contextSwitchTime).run(new Policy(quantum), "rr"));}
 
-}
-
-
-
-
-
-
-
-
-
-
+    //fifo ready queue, every turn is one quantum, arrivals during it queue up before the current process
+    static class Policy implements SchedulingPolicy{
+        private final int quantum;
+        private SimulationKernel kernel;
+        private IntRingQueue queue;
 
+        Policy(int quantum){
+            this.quantum=quantum;
+        }
 
+        public void start(SimulationKernel kernel){
+            this.kernel=kernel;
+            queue=new IntRingQueue(kernel.n);
+        }
 
+        public void arrived(int p){ queue.add(p); }
 
+        public int ready(){ return queue.size(); }
 
+        public int pick(){ return queue.poll(); }
 
+        public int slice(int p){ return quantum; }
 
+        public void requeue(int p){
+            queue.add(p);
+            if (kernel.metrics != null) kernel.metrics.quantumExpiries++;
+        }
 
+        //names are interned so ids compare like the names do
+        public int identity(int p){ return kernel.table.nameId(kernel.rows[p]); }
+    }
 
 
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+import java.util.*;
+
+/*
+ * Outcome of running one policy over a ProcessView.
+ * Per-process columns are indexed by table row, so nothing is
+ * allocated per process.
+ */
+public class RunResult {
+    public final ProcessView table;
+    public final Timeline timeline;
+    public final List<String> executionOrder;
+    public final int[] finishTime;
+    public final int[] waitingTime;
+    public final int[] turnaroundTime;
+    public double averageWaitingTime;
+    public double averageTurnaroundTime;
+
+    // Only filled in by the AG scheduler
+    public QuantumHistory quantumHistory;
+    // Null when metrics are disabled
+    public SchedulerMetrics metrics;
+    public LatencyStats latency;
+
+    public RunResult(ProcessView table, Timeline timeline, int[] finishTime) {
+        this.table = table;
+        this.timeline = timeline;
+        this.executionOrder = timeline.names();
+        this.finishTime = finishTime;
+
+        int n = table.size();
+        waitingTime = new int[n];
+        turnaroundTime = new int[n];
+
+        double totalWait = 0;
+        double totalTurnaround = 0;
+        for (int row = 0; row < n; row++) {
+            turnaroundTime[row] = finishTime[row] - table.arrival(row);
+            waitingTime[row] = turnaroundTime[row] - table.burst(row);
+            totalWait += waitingTime[row];
+            totalTurnaround += turnaroundTime[row];
+        }
+        averageWaitingTime = n == 0 ? 0 : totalWait / n;
+        averageTurnaroundTime = n == 0 ? 0 : totalTurnaround / n;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public String name(int row) {
+        return table.name(row);
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * Receives results from an online scheduler while it runs.
+ * Processes are identified by the id returned when they were submitted.
+ */
+interface SchedulerListener {
+
+    // A dispatch segment that has ended: the process held the CPU over [start, end)
+    void dispatched(int id, int start, int end);
+
+    // A process finished; quantumHistory is only given by the AG scheduler
+    void completed(int id, int arrival, int burst, int finishTime, int[] quantumHistory);
+}
@@ -0,0 +1,89 @@
+/*
+ * Counters one scheduler run updates from its main loop. An instance
+ * belongs to a single run on a single thread, so the counters are plain
+ * fields with no synchronization; finished runs are added together by
+ * MetricsRegistry. Running with -Dscheduler.metrics=false makes create()
+ * return null, and the engines then skip every update.
+ */
+public class SchedulerMetrics {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("scheduler.metrics"));
+
+    // Buckets of the queue depth histogram: 0, 1, 2-3, 4-7, ... up to 2^31
+    public static final int DEPTH_BUCKETS = 33;
+
+    public long runs;
+    // Times a process was given the CPU
+    public long dispatches;
+    // Dispatches of a different process than the last one; for the policies with a
+    // switch cost, the times that cost was charged
+    public long contextSwitches;
+    // A running process displaced by one of better (effective) priority
+    public long priorityPreemptions;
+    // A running process displaced by one with less remaining time
+    public long shortestJobPreemptions;
+    // A process put back in the queue because its quantum ran out
+    public long quantumExpiries;
+    // Time units with nothing to run, summed over cores
+    public long idleTicks;
+
+    // Ready processes seen at each dispatch decision
+    public final long[] queueDepth = new long[DEPTH_BUCKETS];
+    public long queueDepthTotal;
+
+    // Counters for a new run, or null when metrics are disabled
+    static SchedulerMetrics create() {
+        if (!ENABLED) return null;
+        SchedulerMetrics metrics = new SchedulerMetrics();
+        metrics.runs = 1;
+        return metrics;
+    }
+
+    void queueDepth(int depth) {
+        queueDepth[32 - Integer.numberOfLeadingZeros(depth)]++;
+        queueDepthTotal += depth;
+    }
+
+    public long queueDepthSamples() {
+        long samples = 0;
+        for (long count : queueDepth) samples += count;
+        return samples;
+    }
+
+    public double meanQueueDepth() {
+        long samples = queueDepthSamples();
+        return samples == 0 ? 0 : (double) queueDepthTotal / samples;
+    }
+
+    // Upper bound of the bucket holding the given fraction of samples
+    public long queueDepthPercentile(double p) {
+        long samples = queueDepthSamples();
+        if (samples == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * samples));
+        for (int b = 0; b < DEPTH_BUCKETS; b++) {
+            rank -= queueDepth[b];
+            if (rank <= 0) return b == 0 ? 0 : (1L << b) - 1;
+        }
+        return (1L << 32) - 1;
+    }
+
+    public void merge(SchedulerMetrics other) {
+        runs += other.runs;
+        dispatches += other.dispatches;
+        contextSwitches += other.contextSwitches;
+        priorityPreemptions += other.priorityPreemptions;
+        shortestJobPreemptions += other.shortestJobPreemptions;
+        quantumExpiries += other.quantumExpiries;
+        idleTicks += other.idleTicks;
+        for (int b = 0; b < DEPTH_BUCKETS; b++) queueDepth[b] += other.queueDepth[b];
+        queueDepthTotal += other.queueDepthTotal;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("runs=%d dispatches=%d switches=%d priorityPreemptions=%d sjfPreemptions=%d "
+                        + "quantumExpiries=%d idleTicks=%d queueDepth(mean=%.2f, p99<=%d)",
+                runs, dispatches, contextSwitches, priorityPreemptions, shortestJobPreemptions,
+                quantumExpiries, idleTicks, meanQueueDepth(), queueDepthPercentile(0.99));
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * JMX view of the SchedulerMetrics totals for one policy, registered by
+ * MetricsRegistry as scheduler:type=SchedulerMetrics,policy=<name>.
+ */
+public interface SchedulerMetricsMXBean {
+    long getRuns();
+
+    long getDispatches();
+
+    long getContextSwitches();
+
+    long getPriorityPreemptions();
+
+    long getShortestJobPreemptions();
+
+    long getQuantumExpiries();
+
+    long getIdleTicks();
+
+    double getMeanQueueDepth();
+
+    long getQueueDepthP99();
+
+    // Sample counts for depth 0, 1, 2-3, 4-7, ...
+    long[] getQueueDepthHistogram();
+
+    void reset();
+}
@@ -0,0 +1,42 @@
+/*
+ * Scheduling decisions plugged into a SimulationKernel.
+ * Processes are numbered by position in arrival order. The kernel owns
+ * the clock, arrivals, context switches and completions, and asks the
+ * policy only what to run next and for how long.
+ */
+interface SchedulingPolicy {
+
+    // Called once before the run, to size per-process state
+    void start(SimulationKernel kernel);
+
+    // The clock reached time, before the arrivals up to it are admitted
+    default void advance(int time) {
+    }
+
+    // Process p arrived and is ready
+    void arrived(int p);
+
+    // Number of ready processes
+    int ready();
+
+    // Removes and returns the ready process to run next; only called when one is ready
+    int pick();
+
+    // How long p may run before the policy wants to decide again; the kernel stops earlier at completion
+    int slice(int p);
+
+    // p ran for time units ending now, before completion or arrivals during the run are handled
+    default void ran(int p, int time) {
+    }
+
+    // p still has work left; the arrivals during its run are already in
+    void requeue(int p);
+
+    default void completed(int p) {
+    }
+
+    // Dispatching a process with the same identity as the previous one costs no context switch
+    default int identity(int p) {
+        return p;
+    }
+}
@@ -23,9 +23,11 @@ public class ShortestJobFirstProcess {
 
     public static class SJFResult {
         public List<String> executionOrder;
+        public Timeline timeline;
         public List<Process> processes;
         public double averageWaitingTime;
         public double averageTurnaroundTime;
+        public LatencyStats latency;
 
         public SJFResult(List<String> order, List<Process> processes,
                          double avgWT, double avgTAT) {
@@ -38,75 +40,87 @@ public class ShortestJobFirstProcess {
 
     public static SJFResult schedule(List<Process> processes, int contextSwitch) {
 
-        int currentTime = 0;
-        int completed = 0;
-        int n = processes.size();
-        Process currentProcess = null;
-
-        List<String> executionOrder = new ArrayList<>();
-
         // Sort by arrival time
         processes.sort(Comparator.comparingInt(p -> p.arrivaltime));
 
-        while (completed < n) {
-
-            List<Process> readyQueue = new ArrayList<>();
-            for (Process p : processes) {
-                if (p.arrivaltime <= currentTime && p.remainingtime > 0) {
-                    readyQueue.add(p);
-                }
-            }
-
-            // CPU idle
-            if (readyQueue.isEmpty()) {
-                currentTime++;
-                continue;
-            }
-
-            // Shortest remaining time
-            readyQueue.sort((p1, p2) -> {
-                if (p1.remainingtime != p2.remainingtime)
-                    return p1.remainingtime - p2.remainingtime;
-                return p1.arrivaltime - p2.arrivaltime;
-            });
+        ProcessTable table = new ProcessTable(processes.size());
+        for (Process p : processes) {
+            table.add(p.name, p.arrivaltime, p.bursttime, p.priority, 0);
+        }
 
-            Process bestProcess = readyQueue.get(0);
+        RunResult run = schedule(table, contextSwitch);
+
+        for (int i = 0; i < processes.size(); i++) {
+            Process p = processes.get(i);
+            p.remainingtime = 0;
+            p.finishtime = run.finishTime[i];
+            p.turnaroundtime = run.turnaroundTime[i];
+            p.waitingtime = run.waitingTime[i];
+        }
+
+        SJFResult result = new SJFResult(
+                run.executionOrder,
+                processes,
+                run.averageWaitingTime,
+                run.averageTurnaroundTime
+        );
+        result.timeline = run.timeline;
+        result.latency = run.latency;
+        return result;
+    }
 
-            // Context switch
-            if (bestProcess != currentProcess) {
-                if (currentProcess != null)
-                    currentTime += contextSwitch;
+    public static RunResult schedule(ProcessView table, int contextSwitch) {
+        return ResultCache.cached("sjf", table, new int[]{contextSwitch},
+                () -> new SimulationKernel(table, contextSwitch).run(new Policy(), "sjf"));
+    }
 
-                currentProcess = bestProcess;
-                executionOrder.add(currentProcess.name);
-            }
+    /*
+     * Shortest remaining time first. The running process goes back into
+     * the heap at every arrival and keeps the CPU unless a ready one is
+     * strictly better, since the order is total.
+     */
+    static class Policy implements SchedulingPolicy {
+        private SimulationKernel kernel;
+        private IndexedMinHeap readyQueue;
+        private int requeued = -1;
+
+        public void start(SimulationKernel kernel) {
+            this.kernel = kernel;
+            int[] remaining = kernel.remaining;
+            int[] arrival = kernel.arrival;
+            // Shortest remaining time, then arrival, then arrival order
+            readyQueue = new IndexedMinHeap(kernel.n, (a, b) -> {
+                if (remaining[a] != remaining[b])
+                    return Integer.compare(remaining[a], remaining[b]);
+                if (arrival[a] != arrival[b])
+                    return Integer.compare(arrival[a], arrival[b]);
+                return Integer.compare(a, b);
+            });
+        }
 
-            // Execute 1 time unit
-            currentProcess.remainingtime--;
-            currentTime++;
+        public void arrived(int p) {
+            readyQueue.add(p);
+        }
 
-            // Finish
-            if (currentProcess.remainingtime == 0) {
-                currentProcess.finishtime = currentTime;
-                completed++;
-            }
+        public int ready() {
+            return readyQueue.size();
         }
 
-        double totalWait = 0;
-        double totalTurnaround = 0;
+        public int pick() {
+            int p = readyQueue.poll();
+            if (requeued >= 0 && p != requeued && kernel.metrics != null) kernel.metrics.shortestJobPreemptions++;
+            requeued = -1;
+            return p;
+        }
 
-        for (Process p : processes) {
-            p.turnaroundtime = p.finishtime - p.arrivaltime;
-            p.waitingtime = p.turnaroundtime - p.bursttime;
-            totalWait += p.waitingtime;
-            totalTurnaround += p.turnaroundtime;
+        // Until the next arrival can change the decision, or completion
+        public int slice(int p) {
+            return (int) Math.min(Integer.MAX_VALUE, (long) kernel.nextArrival() - kernel.time);
         }
 
-        return new SJFResult(
-                executionOrder,
-                processes,
-                totalWait / n,
-                totalTurnaround / n
-        );
+        public void requeue(int p) {
+            readyQueue.add(p);
+            requeued = p;
+        }
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * Discrete-event core shared by the single-CPU engines.
+ * The kernel keeps the clock, admits arrivals, charges a context switch
+ * whenever a different process is dispatched, and records the timeline,
+ * finish times, metrics and latencies. A SchedulingPolicy picks the next
+ * process and how long it may run. Time only moves from one event to the
+ * next: a policy's decision point, a completion, or, when the CPU is idle,
+ * the next arrival. So the cost of a run follows the number of decisions,
+ * not the length of the bursts.
+ *
+ * Arrivals during a run are admitted before the process that ran is
+ * requeued, as in Round Robin.
+ */
+public class SimulationKernel {
+
+    public final ProcessView table;
+    public final int contextSwitch;
+
+    // Per process, numbered by position in arrival order
+    final int n;
+    final int[] rows;
+    final int[] arrival;
+    final int[] remaining;
+
+    int time;
+    // Null when metrics are disabled
+    SchedulerMetrics metrics;
+    private int next;
+
+    public SimulationKernel(ProcessView table, int contextSwitch) {
+        this.table = table;
+        this.contextSwitch = contextSwitch;
+        this.n = table.size();
+        this.rows = table.arrivalOrder();
+        this.arrival = new int[n];
+        this.remaining = new int[n];
+    }
+
+    // Runs the whole table under the policy; metrics are recorded under the given name
+    public RunResult run(SchedulingPolicy policy, String name) {
+        for (int i = 0; i < n; i++) {
+            arrival[i] = table.arrival(rows[i]);
+            remaining[i] = table.burst(rows[i]);
+        }
+        time = 0;
+        next = 0;
+        metrics = SchedulerMetrics.create();
+        Timeline timeline = new Timeline(table);
+        LatencyStats latency = new LatencyStats();
+        int[] finish = new int[n];
+        policy.start(this);
+
+        int completed = 0;
+        int last = -1;
+        while (completed < n) {
+            policy.advance(time);
+            admit(policy);
+
+            // CPU idle until the next arrival
+            if (policy.ready() == 0) {
+                if (metrics != null) metrics.idleTicks += arrival[next] - time;
+                time = arrival[next];
+                continue;
+            }
+
+            if (metrics != null) metrics.queueDepth(policy.ready());
+            int p = policy.pick();
+            int identity = policy.identity(p);
+            if (identity != last) {
+                if (last >= 0) {
+                    time += contextSwitch;
+                    if (metrics != null) metrics.contextSwitches++;
+                }
+                timeline.open(rows[p], time);
+                if (metrics != null) metrics.dispatches++;
+                last = identity;
+            }
+            int burst = table.burst(rows[p]);
+            if (remaining[p] == burst) latency.started(arrival[p], time);
+
+            int slice = Math.min(remaining[p], Math.max(1, policy.slice(p)));
+            time += slice;
+            timeline.extend(time);
+            remaining[p] -= slice;
+            policy.ran(p, slice);
+
+            if (remaining[p] == 0) {
+                finish[rows[p]] = time;
+                latency.completed(arrival[p], burst, time);
+                completed++;
+                policy.completed(p);
+                continue;
+            }
+            admit(policy);
+            policy.requeue(p);
+        }
+
+        MetricsRegistry.record(name, metrics);
+        RunResult result = new RunResult(table, timeline, finish);
+        result.metrics = metrics;
+        result.latency = latency;
+        return result;
+    }
+
+    private void admit(SchedulingPolicy policy) {
+        while (next < n && arrival[next] <= time) {
+            policy.arrived(next++);
+        }
+    }
+
+    // Arrival time of the next process not yet admitted, Integer.MAX_VALUE if there is none
+    int nextArrival() {
+        return next < n ? arrival[next] : Integer.MAX_VALUE;
+    }
+
+    int burst(int p) {
+        return table.burst(rows[p]);
+    }
+
+    int priority(int p) {
+        return table.priority(rows[p]);
+    }
+}
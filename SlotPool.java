@@ -0,0 +1,34 @@
+/*
+ * Hands out small integer slots and takes them back for reuse, so
+ * per-process arrays only need to be as large as the number of
+ * processes alive at the same time.
+ */
+class SlotPool {
+    private int[] free = new int[16];
+    private int freeCount;
+    private int highWater;
+
+    public int acquire() {
+        return freeCount > 0 ? free[--freeCount] : highWater++;
+    }
+
+    public void release(int slot) {
+        if (freeCount == free.length) free = java.util.Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = slot;
+    }
+
+    public void copyFrom(SlotPool other) {
+        free = other.free.clone();
+        freeCount = other.freeCount;
+        highWater = other.highWater;
+    }
+
+    // One past the largest slot ever handed out
+    public int capacity() {
+        return highWater;
+    }
+
+    public int inUse() {
+        return highWater - freeCount;
+    }
+}
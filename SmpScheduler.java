@@ -0,0 +1,595 @@
+import java.util.*;
+
+/*
+ * N-core simulation of the RR, SJF, Priority and AG policies.
+ * Each core has its own ready queue, ordered by the policy the same way
+ * the single-CPU engines order theirs, and the policy's preemption rules
+ * only look at the core's own queue. Processes are placed on the least
+ * loaded core when they arrive. Load is then balanced two ways:
+ *   push migration  every balanceInterval ticks, waiting processes move
+ *                   from the longest queue to the shortest while the
+ *                   lengths differ by more than imbalanceThreshold
+ *                   (at least 1, since a move can't even out a
+ *                   difference of 1)
+ *   work stealing   a core with nothing to run takes a waiting process
+ *                   from the longest queue
+ * A process that runs on another core than last time pays migrationCost
+ * on top of the usual contextSwitch.
+ *
+ * The simulation steps one tick at a time over all cores and skips ahead
+ * when every core is idle. Per-run state lives in a Run, so one
+ * SmpScheduler can be used from several threads.
+ *
+ * Usage: java SmpScheduler <workload.json|.bin> [--policy rr|sjf|priority|ag] [--cores 1,2,4,8]
+ *            [--migration n] [--balance n] [--threshold n] [--no-steal]
+ */
+public class SmpScheduler {
+
+    public int cores;
+    public String policy;
+    public int contextSwitch;
+    public int migrationCost;
+    public int rrQuantum = 2;
+    public int agingInterval = 5;
+
+    // Push migration period in ticks, 0 for none
+    public int balanceInterval;
+    public int imbalanceThreshold = 1;
+    public boolean workStealing = true;
+
+    public SmpScheduler(int cores, String policy) {
+        if (cores < 1) throw new IllegalArgumentException("At least one core is needed");
+        this.cores = cores;
+        this.policy = policy;
+    }
+
+    public SmpResult run(ProcessView table) {
+        return new Run(table).simulate();
+    }
+
+    // One core's ready queue; processes are identified by their position in arrival order
+    interface CoreQueue {
+        void add(int job);
+
+        // Removes and returns the next process to dispatch, or -1
+        int poll();
+
+        // Removes and returns a process another core may take, or -1
+        int steal();
+
+        int size();
+
+        // One tick passed for the processes waiting here
+        void tick();
+
+        // Called after each tick of a process that isn't finished. Returns the process to switch to,
+        // already taken out of the queue, after putting job back; or -1 to keep running job.
+        int preempt(int job, int usage);
+    }
+
+    private static class Core {
+        final int id;
+        final CoreQueue queue;
+        final Timeline timeline;
+        int running = -1;
+        int lastJob = -1;
+        int usage;
+        int overhead;
+        long busyTime;
+        long overheadTime;
+
+        Core(int id, CoreQueue queue, Timeline timeline) {
+            this.id = id;
+            this.queue = queue;
+            this.timeline = timeline;
+        }
+
+        int load() {
+            return queue.size() + (running >= 0 ? 1 : 0);
+        }
+    }
+
+    private class Run {
+        final ProcessView table;
+        final int n;
+        final int[] rows;
+        final int[] arrival;
+        final int[] priority;
+        final int[] remaining;
+        final int[] quantum;
+        final int[] lastCore;
+        final int[] waited;
+        // Local queue slot of each waiting process; a process waits in at most one queue
+        final int[] slotOf;
+        final int[] finish;
+        final Core[] core;
+        final SchedulerMetrics metrics = SchedulerMetrics.create();
+        final LatencyStats latency = new LatencyStats();
+        int completed;
+        int migrations;
+        int steals;
+
+        Run(ProcessView table) {
+            this.table = table;
+            n = table.size();
+            rows = table.arrivalOrder();
+            arrival = new int[n];
+            priority = new int[n];
+            remaining = new int[n];
+            quantum = new int[n];
+            lastCore = new int[n];
+            waited = new int[n];
+            slotOf = new int[n];
+            finish = new int[n];
+            for (int i = 0; i < n; i++) {
+                int row = rows[i];
+                arrival[i] = table.arrival(row);
+                priority[i] = table.priority(row);
+                remaining[i] = table.burst(row);
+                quantum[i] = table.quantum(row);
+                lastCore[i] = -1;
+            }
+            core = new Core[cores];
+            for (int c = 0; c < cores; c++) {
+                core[c] = new Core(c, newQueue(), new Timeline(table));
+            }
+        }
+
+        CoreQueue newQueue() {
+            switch (policy) {
+                case "rr":
+                    return new RoundRobinQueue();
+                case "sjf":
+                    return new ShortestJobQueue();
+                case "priority":
+                    return new AgingQueue();
+                case "ag":
+                    return new AGQueue();
+                default:
+                    throw new IllegalArgumentException("Unknown policy " + policy);
+            }
+        }
+
+        SmpResult simulate() {
+            int time = 0;
+            int next = 0;
+            while (completed < n) {
+                while (next < n && arrival[next] <= time) place(next++);
+                if (balanceInterval > 0 && time % balanceInterval == 0) balance();
+
+                // Every core picks its process before any runs, so a process put back
+                // during this tick can't also run elsewhere in it
+                for (Core c : core) {
+                    if (c.running < 0) pick(c);
+                }
+                boolean active = false;
+                for (Core c : core) {
+                    if (step(c, time)) active = true;
+                    else if (metrics != null) metrics.idleTicks++;
+                }
+                for (Core c : core) c.queue.tick();
+                time++;
+
+                // Every core idle and nothing queued: skip to the next arrival
+                if (!active && next < n && arrival[next] > time) {
+                    if (metrics != null) metrics.idleTicks += (long) cores * (arrival[next] - time);
+                    time = arrival[next];
+                }
+            }
+            MetricsRegistry.record("smp-" + policy, metrics);
+            return result();
+        }
+
+        void place(int job) {
+            if (remaining[job] == 0) {
+                finish[rows[job]] = arrival[job];
+                latency.started(arrival[job], arrival[job]);
+                latency.completed(arrival[job], 0, arrival[job]);
+                completed++;
+                return;
+            }
+            Core best = core[0];
+            for (Core c : core) {
+                if (c.load() < best.load()) best = c;
+            }
+            best.queue.add(job);
+        }
+
+        void balance() {
+            while (true) {
+                Core longest = core[0];
+                Core shortest = core[0];
+                for (Core c : core) {
+                    if (c.queue.size() > longest.queue.size()) longest = c;
+                    if (c.queue.size() < shortest.queue.size()) shortest = c;
+                }
+                // A difference of 1 would only swap which queue is longer
+                if (longest.queue.size() - shortest.queue.size() <= Math.max(1, imbalanceThreshold)) return;
+                shortest.queue.add(longest.queue.steal());
+            }
+        }
+
+        int steal(Core thief) {
+            Core victim = null;
+            for (Core c : core) {
+                if (c != thief && c.queue.size() > 0 && (victim == null || c.queue.size() > victim.queue.size())) victim = c;
+            }
+            if (victim == null) return -1;
+            steals++;
+            return victim.queue.steal();
+        }
+
+        void pick(Core c) {
+            if (metrics != null) metrics.queueDepth(c.queue.size());
+            int job = c.queue.poll();
+            if (job < 0 && workStealing) job = steal(c);
+            if (job >= 0) dispatch(c, job);
+        }
+
+        // Runs one tick on the core; false if it had nothing to do
+        boolean step(Core c, int time) {
+            if (c.running < 0) return false;
+            if (c.overhead > 0) {
+                c.overhead--;
+                c.overheadTime++;
+                return true;
+            }
+
+            int job = c.running;
+            int row = rows[job];
+            Timeline timeline = c.timeline;
+            if (timeline.size() == 0 || timeline.lastRow() != row || timeline.end(timeline.size() - 1) != time) {
+                timeline.open(row, time);
+            }
+            timeline.extend(time + 1);
+            int burst = table.burst(row);
+            if (remaining[job] == burst) latency.started(arrival[job], time);
+            remaining[job]--;
+            c.usage++;
+            c.busyTime++;
+
+            if (remaining[job] == 0) {
+                finish[row] = time + 1;
+                latency.completed(arrival[job], burst, time + 1);
+                quantum[job] = 0;
+                completed++;
+                c.running = -1;
+            } else {
+                int other = c.queue.preempt(job, c.usage);
+                if (other >= 0) dispatch(c, other);
+            }
+            return true;
+        }
+
+        void dispatch(Core c, int job) {
+            if (metrics != null) metrics.dispatches++;
+            if (c.lastJob >= 0 && c.lastJob != job) {
+                c.overhead += contextSwitch;
+                if (metrics != null) metrics.contextSwitches++;
+            }
+            if (lastCore[job] >= 0 && lastCore[job] != c.id) {
+                c.overhead += migrationCost;
+                migrations++;
+            }
+            lastCore[job] = c.id;
+            c.lastJob = job;
+            c.running = job;
+            c.usage = 0;
+        }
+
+        SmpResult result() {
+            SmpResult result = new SmpResult(table, finish);
+            result.coreTimelines = new Timeline[cores];
+            result.busyTime = new long[cores];
+            result.overheadTime = new long[cores];
+            result.utilization = new double[cores];
+            for (int c = 0; c < cores; c++) {
+                result.coreTimelines[c] = core[c].timeline;
+                result.busyTime[c] = core[c].busyTime;
+                result.overheadTime[c] = core[c].overheadTime;
+                result.utilization[c] = result.makespan == 0 ? 0 : (double) core[c].busyTime / result.makespan;
+            }
+            result.migrations = migrations;
+            result.steals = steals;
+            result.metrics = metrics;
+            result.latency = latency;
+            return result;
+        }
+
+        // Local slot numbering for queues that keep per-process arrays
+        class LocalSlots {
+            final SlotPool pool = new SlotPool();
+            int[] job = new int[16];
+
+            int acquire(int j) {
+                int slot = pool.acquire();
+                if (slot == job.length) job = Arrays.copyOf(job, slot * 2);
+                job[slot] = j;
+                slotOf[j] = slot;
+                return slot;
+            }
+
+            int release(int slot) {
+                pool.release(slot);
+                return job[slot];
+            }
+        }
+
+        class RoundRobinQueue implements CoreQueue {
+            final IntRingQueue queue = new IntRingQueue(16);
+
+            public void add(int job) {
+                queue.add(job);
+            }
+
+            public int poll() {
+                return queue.poll();
+            }
+
+            public int steal() {
+                return queue.poll();
+            }
+
+            public int size() {
+                return queue.size();
+            }
+
+            public void tick() {
+            }
+
+            public int preempt(int job, int usage) {
+                // Slice used up: to the back, unless nobody else is waiting
+                if (usage % rrQuantum != 0 || queue.isEmpty()) return -1;
+                if (metrics != null) metrics.quantumExpiries++;
+                queue.add(job);
+                return queue.poll();
+            }
+        }
+
+        class ShortestJobQueue implements CoreQueue {
+            final LocalSlots slots = new LocalSlots();
+            final IndexedMinHeap heap = new IndexedMinHeap(16, (a, b) -> {
+                int x = slots.job[a], y = slots.job[b];
+                if (remaining[x] != remaining[y]) return Integer.compare(remaining[x], remaining[y]);
+                return Integer.compare(x, y);
+            });
+
+            public void add(int job) {
+                int slot = slots.acquire(job);
+                heap.ensureCapacity(slot + 1);
+                heap.add(slot);
+            }
+
+            public int poll() {
+                return heap.isEmpty() ? -1 : slots.release(heap.poll());
+            }
+
+            public int steal() {
+                return poll();
+            }
+
+            public int size() {
+                return heap.size();
+            }
+
+            public void tick() {
+            }
+
+            public int preempt(int job, int usage) {
+                int best = heap.peek();
+                if (best < 0 || remaining[slots.job[best]] >= remaining[job]) return -1;
+                if (metrics != null) metrics.shortestJobPreemptions++;
+                add(job);
+                return poll();
+            }
+        }
+
+        class AgingQueue implements CoreQueue {
+            final LocalSlots slots = new LocalSlots();
+            final AgingReadyQueue queue = new AgingReadyQueue(agingInterval);
+            int size;
+
+            public void add(int job) {
+                int slot = slots.acquire(job);
+                queue.add(slot, priority[job], arrival[job], table.name(rows[job]), job, waited[job]);
+                size++;
+            }
+
+            public int poll() {
+                int slot = queue.peek();
+                if (slot < 0) return -1;
+                int job = slots.job[slot];
+                waited[job] = queue.waited(slot);
+                queue.remove(slot);
+                size--;
+                return slots.release(slot);
+            }
+
+            public int steal() {
+                return poll();
+            }
+
+            public int size() {
+                return size;
+            }
+
+            public void tick() {
+                queue.chargeWait(1, -1);
+            }
+
+            public int preempt(int job, int usage) {
+                int best = queue.peek();
+                if (best < 0 || queue.effectivePriority(best)
+                        >= Process.effectivePriority(priority[job], waited[job], agingInterval)) return -1;
+                if (metrics != null) metrics.priorityPreemptions++;
+                add(job);
+                return poll();
+            }
+        }
+
+        class AGQueue implements CoreQueue {
+            final LocalSlots slots = new LocalSlots();
+            final AGScheduler.WaitingQueue queue = new AGScheduler.WaitingQueue();
+            int size;
+
+            public void add(int job) {
+                queue.add(slots.acquire(job), priority[job], remaining[job]);
+                size++;
+            }
+
+            public int poll() {
+                if (queue.isEmpty()) return -1;
+                size--;
+                return slots.release(queue.pollFirst());
+            }
+
+            public int steal() {
+                return poll();
+            }
+
+            public int size() {
+                return size;
+            }
+
+            public void tick() {
+            }
+
+            // Same quantum rules as AGScheduler, against this core's queue
+            public int preempt(int job, int usage) {
+                int q = quantum[job];
+                int limit25 = (int) Math.ceil(q * 0.25);
+                int limit50 = limit25 * 2;
+
+                if (usage == q) {
+                    if (metrics != null) metrics.quantumExpiries++;
+                    quantum[job] += 2;
+                    add(job);
+                    return poll();
+                }
+                if (usage == limit25) {
+                    int best = queue.bestPriority();
+                    if (best >= 0 && priority[slots.job[best]] < priority[job]) {
+                        quantum[job] += (int) Math.ceil((q - usage) / 2.0);
+                        if (metrics != null) metrics.priorityPreemptions++;
+                        return switchTo(job, best);
+                    }
+                }
+                if (usage == limit50) {
+                    int best = queue.shortestJob();
+                    if (best >= 0 && remaining[slots.job[best]] < remaining[job]) {
+                        quantum[job] += q - usage;
+                        if (metrics != null) metrics.shortestJobPreemptions++;
+                        return switchTo(job, best);
+                    }
+                }
+                return -1;
+            }
+
+            private int switchTo(int job, int slot) {
+                queue.remove(slot);
+                size--;
+                int other = slots.release(slot);
+                add(job);
+                return other;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java SmpScheduler <workload.json|.bin> [--policy p] [--cores 1,2,4] "
+                    + "[--migration n] [--balance n] [--threshold n] [--no-steal]");
+            System.exit(1);
+        }
+        Workload workload = WorkloadLoader.load(args[0]);
+        String policy = "rr";
+        int[] coreCounts = {1, 2, 4, 8};
+        SmpScheduler scheduler = new SmpScheduler(1, policy);
+        scheduler.contextSwitch = workload.contextSwitch;
+        if (workload.rrQuantum > 0) scheduler.rrQuantum = workload.rrQuantum;
+        if (workload.agingInterval > 0) scheduler.agingInterval = workload.agingInterval;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--policy":
+                    scheduler.policy = args[++i];
+                    break;
+                case "--cores":
+                    coreCounts = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--migration":
+                    scheduler.migrationCost = Integer.parseInt(args[++i]);
+                    break;
+                case "--balance":
+                    scheduler.balanceInterval = Integer.parseInt(args[++i]);
+                    break;
+                case "--threshold":
+                    scheduler.imbalanceThreshold = Integer.parseInt(args[++i]);
+                    break;
+                case "--no-steal":
+                    scheduler.workStealing = false;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        System.out.printf("%6s %12s %12s %10s %10s %8s %11s %8s%n",
+                "cores", "avg wait", "avg tat", "p99 wait", "makespan", "util", "migrations", "steals");
+        for (int cores : coreCounts) {
+            scheduler.cores = cores;
+            SmpResult r = scheduler.run(workload.processes);
+            double utilization = 0;
+            for (double u : r.utilization) utilization += u;
+            System.out.printf("%6d %12.2f %12.2f %10d %10d %7.1f%% %11d %8d%n", cores,
+                    r.averageWaitingTime, r.averageTurnaroundTime, ParameterSweep.percentile(r.waitingTime, 0.99),
+                    r.makespan, 100 * utilization / cores, r.migrations, r.steals);
+        }
+    }
+}
+
+/*
+ * Outcome of an SmpScheduler run: per-process results indexed by table
+ * row like RunResult, plus one timeline and utilization figure per core.
+ */
+class SmpResult {
+    public final ProcessView table;
+    public final int[] finishTime;
+    public final int[] waitingTime;
+    public final int[] turnaroundTime;
+    public final double averageWaitingTime;
+    public final double averageTurnaroundTime;
+    public final int makespan;
+
+    public Timeline[] coreTimelines;
+    // Ticks spent running processes, and switching or migrating
+    public long[] busyTime;
+    public long[] overheadTime;
+    // busyTime over makespan
+    public double[] utilization;
+    public int migrations;
+    public int steals;
+    // Summed over cores; null when metrics are disabled
+    public SchedulerMetrics metrics;
+    public LatencyStats latency;
+
+    SmpResult(ProcessView table, int[] finishTime) {
+        int n = table.size();
+        this.table = table;
+        this.finishTime = finishTime;
+        waitingTime = new int[n];
+        turnaroundTime = new int[n];
+        long totalWaiting = 0, totalTurnaround = 0;
+        int last = 0;
+        for (int row = 0; row < n; row++) {
+            turnaroundTime[row] = finishTime[row] - table.arrival(row);
+            waitingTime[row] = turnaroundTime[row] - table.burst(row);
+            totalWaiting += waitingTime[row];
+            totalTurnaround += turnaroundTime[row];
+            last = Math.max(last, finishTime[row]);
+        }
+        makespan = last;
+        averageWaitingTime = n == 0 ? 0 : (double) totalWaiting / n;
+        averageTurnaroundTime = n == 0 ? 0 : (double) totalTurnaround / n;
+    }
+}
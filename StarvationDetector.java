@@ -0,0 +1,147 @@
+import java.util.*;
+
+/*
+ * Flags processes that have waited far longer than is usual for their
+ * priority class, while the run is still going. The usual wait of a class
+ * is the median waiting time of its completed processes. Once minSamples
+ * of them have completed, a process of the class still in the system is
+ * flagged as soon as its wait so far exceeds multiple times the median
+ * (and minimumWait). Each process is flagged at most once.
+ *
+ * The online engines report to it by slot: arrived when a process enters
+ * the ready queue, ran for the time it executes, completed when it
+ * finishes and check as time passes. nextCheck tells them how far they can
+ * run before a check could flag anything. A process's wait is the time since
+ * arrival minus the time it ran, so within a class the longest waiter is
+ * the one with the smallest arrival + run time. Each class keeps a heap on
+ * that key and check only looks at the tops. Keys only grow, and only
+ * while a process runs, so instead of re-sifting on every tick a stale
+ * key is fixed when it reaches the top.
+ */
+public class StarvationDetector {
+
+    public interface Alarm {
+        void starving(int id, int priority, int waited, int classMedian, int time);
+    }
+
+    public double multiple;
+    public int minSamples = 20;
+    public int minimumWait = 10;
+
+    private final Alarm alarm;
+    private final PriorityClasses classes = new PriorityClasses();
+    private long flagged;
+
+    // Per class
+    private IndexedMinHeap[] waiting = new IndexedMinHeap[8];
+    private LatencyHistogram[] completedWaits = new LatencyHistogram[8];
+    private int[] median = new int[8];
+    // Completions since the median was last worked out
+    private long[] sinceMedian = new long[8];
+
+    // Per slot: arrival + run time as of the heap position, and as of now
+    private int capacity = 16;
+    private int[] id = new int[16];
+    private int[] classOf = new int[16];
+    private int[] key = new int[16];
+    private int[] base = new int[16];
+
+    public StarvationDetector(double multiple, Alarm alarm) {
+        this.multiple = multiple;
+        this.alarm = alarm;
+    }
+
+    public long flagged() {
+        return flagged;
+    }
+
+    void arrived(int slot, int processId, int priority, int arrival) {
+        ensureCapacity(slot + 1);
+        int c = classes.of(priority);
+        if (c == waiting.length) growClasses();
+        if (waiting[c] == null) {
+            waiting[c] = new IndexedMinHeap(capacity, (a, b) -> Integer.compare(key[a], key[b]));
+            completedWaits[c] = new LatencyHistogram();
+        }
+        id[slot] = processId;
+        classOf[slot] = c;
+        key[slot] = arrival;
+        base[slot] = arrival;
+        waiting[c].add(slot);
+    }
+
+    void ran(int slot, int time) {
+        base[slot] += time;
+    }
+
+    void completed(int slot, int waited) {
+        int c = classOf[slot];
+        waiting[c].remove(slot);
+        LatencyHistogram waits = completedWaits[c];
+        waits.record(waited);
+        // Worked out again once the class has grown by 1/64, so the scans stay cheap
+        if (++sinceMedian[c] >= Math.max(1, waits.count() >> 6)) {
+            median[c] = waits.percentile(0.5);
+            sinceMedian[c] = 0;
+        }
+    }
+
+    void check(int time) {
+        for (int c = 0; c < classes.size(); c++) {
+            if (completedWaits[c].count() < minSamples) continue;
+            IndexedMinHeap heap = waiting[c];
+            double threshold = Math.max(minimumWait, multiple * median[c]);
+            while (!heap.isEmpty()) {
+                int top = heap.peek();
+                if (key[top] != base[top]) {
+                    key[top] = base[top];
+                    heap.update(top);
+                    continue;
+                }
+                int waited = time - key[top];
+                if (waited <= threshold) break;
+                heap.remove(top);
+                flagged++;
+                alarm.starving(id[top], classes.priority(c), waited, median[c], time);
+            }
+        }
+    }
+
+    /*
+     * Earliest time a check could flag a process, counting one that arrives
+     * at nextArrival; Integer.MAX_VALUE if none can until the next
+     * completion. Heap keys are never above the real ones, so this may be
+     * early but never late.
+     */
+    long nextCheck(long nextArrival) {
+        // The arrival may start a class of its own, which is checked at once without samples
+        long earliest = minSamples > 0 ? Integer.MAX_VALUE : Math.min(Integer.MAX_VALUE, nextArrival + minimumWait + 1);
+        for (int c = 0; c < classes.size(); c++) {
+            if (completedWaits[c].count() < minSamples) continue;
+            long longest = waiting[c].isEmpty() ? nextArrival : Math.min(key[waiting[c].peek()], nextArrival);
+            double threshold = Math.max(minimumWait, multiple * median[c]);
+            earliest = Math.min(earliest, (long) Math.floor(longest + threshold) + 1);
+        }
+        return earliest;
+    }
+
+    private void growClasses() {
+        int grown = waiting.length * 2;
+        waiting = Arrays.copyOf(waiting, grown);
+        completedWaits = Arrays.copyOf(completedWaits, grown);
+        median = Arrays.copyOf(median, grown);
+        sinceMedian = Arrays.copyOf(sinceMedian, grown);
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots <= capacity) return;
+        capacity = Math.max(slots, capacity * 2);
+        id = Arrays.copyOf(id, capacity);
+        classOf = Arrays.copyOf(classOf, capacity);
+        key = Arrays.copyOf(key, capacity);
+        base = Arrays.copyOf(base, capacity);
+        for (IndexedMinHeap heap : waiting) {
+            if (heap != null) heap.ensureCapacity(capacity);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.*;
+
+/*
+ * Execution timeline kept as (row, start, end) segments in parallel int
+ * arrays. A segment is opened every time a scheduler dispatches a process
+ * and stretched while that process keeps the CPU, so one segment stands
+ * for one entry of the old execution order list. Segments never overlap
+ * and are stored in start order; gaps are idle time or context switches.
+ */
+public class Timeline {
+
+    public interface SegmentVisitor {
+        void visit(int row, int start, int end);
+    }
+
+    private final ProcessView table;
+    private int[] row;
+    private int[] start;
+    private int[] end;
+    private int size;
+    private List<String> names;
+
+    public Timeline(ProcessView table) {
+        this.table = table;
+        row = new int[16];
+        start = new int[16];
+        end = new int[16];
+    }
+
+    // Starts a new segment for the given table row
+    public void open(int processRow, int time) {
+        if (size == row.length) {
+            int capacity = size << 1;
+            row = Arrays.copyOf(row, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+        }
+        row[size] = processRow;
+        start[size] = time;
+        end[size] = time;
+        size++;
+    }
+
+    // Stretches the latest segment up to the given time
+    public void extend(int time) {
+        end[size - 1] = time;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int row(int segment) {
+        return row[segment];
+    }
+
+    public int start(int segment) {
+        return start[segment];
+    }
+
+    public int end(int segment) {
+        return end[segment];
+    }
+
+    public int lastRow() {
+        return size == 0 ? -1 : row[size - 1];
+    }
+
+    // Segment running during [time, time + 1), or -1 if the CPU was not running anything
+    public int segmentAt(int time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start[mid] <= time) lo = mid + 1;
+            else hi = mid;
+        }
+        int segment = lo - 1;
+        return segment >= 0 && time < end[segment] ? segment : -1;
+    }
+
+    // Table row running at the given time, or -1
+    public int rowAt(int time) {
+        int segment = segmentAt(time);
+        return segment < 0 ? -1 : row[segment];
+    }
+
+    public void forEach(SegmentVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(row[i], start[i], end[i]);
+        }
+    }
+
+    // Process names in dispatch order, resolved on access
+    public List<String> names() {
+        if (names == null) {
+            names = new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index);
+                    return table.name(row[index]);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return names;
+    }
+}
@@ -0,0 +1,386 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.*;
+
+/*
+ * What-if runs of the Priority and AG engines against a baseline.
+ * The baseline is fed to the online engine one interval of simulated time
+ * at a time, and after each interval a copy of the engine is kept as a
+ * checkpoint: clock, ready queue with its aging state (or the AG waiting
+ * list), remaining times, quanta and their history, and the dispatch
+ * segment in progress. Up to a checkpoint's time the engine has only seen
+ * the processes arriving by then, so a modified workload that agrees with
+ * the baseline on those resumes from a copy of the latest such checkpoint
+ * and only simulates the rest. The timeline and finish times before that
+ * point are taken from the baseline's log.
+ *
+ * Checkpoints hold the processes in flight, not the whole trace, and a
+ * query costs the simulation after the first divergence plus one pass
+ * over the result.
+ *
+ * Usage: java WhatIfAnalysis <workload.json|.bin> [--policy priority|ag] [--interval n]
+ * then one query per line on standard input, each against the baseline:
+ *   arrive <name> <time>   burst <name> <n>   priority <name> <p>   remove <name>
+ *   add <name> <arrival> <burst> <priority> <quantum>
+ */
+public class WhatIfAnalysis {
+
+    public final String policy;
+    public final ProcessView table;
+    public final int contextSwitch;
+    public final int agingInterval;
+    public final int interval;
+    public final RunResult baseline;
+    // Time of the checkpoint the last query resumed from, -1 for a run from the start
+    public int resumedAt;
+
+    private final int[] rows;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private final Log log;
+
+    // The online engines behind one interface; ids follow submission order
+    private interface Engine {
+        void submit(ProcessView table, int row);
+
+        void advanceTo(int time);
+
+        void finish();
+
+        Engine copy(SchedulerListener listener);
+
+        SchedulerMetrics metrics();
+
+        LatencyStats latency();
+    }
+
+    private static class PriorityEngine implements Engine {
+        private final OnlinePriorityScheduling engine;
+
+        PriorityEngine(OnlinePriorityScheduling engine) {
+            this.engine = engine;
+        }
+
+        public void submit(ProcessView table, int row) {
+            engine.submit(table.name(row), table.arrival(row), table.burst(row), table.priority(row));
+        }
+
+        public void advanceTo(int time) {
+            engine.advanceTo(time);
+        }
+
+        public void finish() {
+            engine.finish();
+        }
+
+        public Engine copy(SchedulerListener listener) {
+            return new PriorityEngine(engine.copy(listener));
+        }
+
+        public SchedulerMetrics metrics() {
+            return engine.metrics;
+        }
+
+        public LatencyStats latency() {
+            return engine.latency;
+        }
+    }
+
+    private static class AGEngine implements Engine {
+        private final OnlineAGScheduler engine;
+
+        AGEngine(OnlineAGScheduler engine) {
+            this.engine = engine;
+        }
+
+        public void submit(ProcessView table, int row) {
+            engine.submit(table.name(row), table.arrival(row), table.burst(row), table.priority(row), table.quantum(row));
+        }
+
+        public void advanceTo(int time) {
+            engine.advanceTo(time);
+        }
+
+        public void finish() {
+            engine.finish();
+        }
+
+        public Engine copy(SchedulerListener listener) {
+            return new AGEngine(engine.copy(listener));
+        }
+
+        public SchedulerMetrics metrics() {
+            return engine.metrics;
+        }
+
+        public LatencyStats latency() {
+            return engine.latency;
+        }
+    }
+
+    // Engine state once every process arriving at or before time was submitted and simulated up to it
+    private static class Checkpoint {
+        final int time;
+        final int submitted;
+        final int segments;
+        // Never run; queries resume from copies of it
+        final Engine engine;
+
+        Checkpoint(int time, int submitted, int segments, Engine engine) {
+            this.time = time;
+            this.submitted = submitted;
+            this.segments = segments;
+            this.engine = engine;
+        }
+    }
+
+    // What the engine reported, by id
+    private static class Log implements SchedulerListener {
+        int[] segmentId;
+        int[] segmentStart;
+        int[] segmentEnd;
+        int segments;
+        int[] finish;
+        int[][] history;
+
+        Log(int processes) {
+            segmentId = new int[16];
+            segmentStart = new int[16];
+            segmentEnd = new int[16];
+            finish = new int[processes];
+            history = new int[processes][];
+        }
+
+        // The first segments of base, with room for the given number of processes
+        Log(Log base, int segments, int processes) {
+            int capacity = Math.max(16, segments);
+            segmentId = Arrays.copyOf(base.segmentId, capacity);
+            segmentStart = Arrays.copyOf(base.segmentStart, capacity);
+            segmentEnd = Arrays.copyOf(base.segmentEnd, capacity);
+            this.segments = segments;
+            // Processes still running at the checkpoint finish again, so stale entries get overwritten
+            finish = Arrays.copyOf(base.finish, processes);
+            history = Arrays.copyOf(base.history, processes);
+        }
+
+        @Override
+        public void dispatched(int id, int start, int end) {
+            if (segments == segmentId.length) {
+                int capacity = segments * 2;
+                segmentId = Arrays.copyOf(segmentId, capacity);
+                segmentStart = Arrays.copyOf(segmentStart, capacity);
+                segmentEnd = Arrays.copyOf(segmentEnd, capacity);
+            }
+            segmentId[segments] = id;
+            segmentStart[segments] = start;
+            segmentEnd[segments] = end;
+            segments++;
+        }
+
+        @Override
+        public void completed(int id, int arrival, int burst, int finishTime, int[] quantumHistory) {
+            finish[id] = finishTime;
+            history[id] = quantumHistory;
+        }
+    }
+
+    public static WhatIfAnalysis priority(ProcessView table, int contextSwitch, int agingInterval, int interval) {
+        return new WhatIfAnalysis("priority", table, contextSwitch, agingInterval, interval);
+    }
+
+    public static WhatIfAnalysis ag(ProcessView table, int interval) {
+        return new WhatIfAnalysis("ag", table, 0, 0, interval);
+    }
+
+    private WhatIfAnalysis(String policy, ProcessView table, int contextSwitch, int agingInterval, int interval) {
+        if (interval < 1) throw new IllegalArgumentException("Checkpoint interval must be positive");
+        this.policy = policy;
+        this.table = table;
+        this.contextSwitch = contextSwitch;
+        this.agingInterval = agingInterval;
+        this.interval = interval;
+        this.rows = table.arrivalOrder();
+        this.log = new Log(rows.length);
+
+        Engine engine = start(log);
+        checkpoints.add(new Checkpoint(-1, 0, 0, engine.copy(null)));
+        int next = 0;
+        long time = 0;
+        while (next < rows.length) {
+            // Stretches without arrivals get no checkpoints
+            int arrival = table.arrival(rows[next]);
+            time = Math.min(Integer.MAX_VALUE, Math.max(time + interval, (arrival - 1L) / interval * interval));
+            while (next < rows.length && table.arrival(rows[next]) <= time) engine.submit(table, rows[next++]);
+            engine.advanceTo((int) time);
+            checkpoints.add(new Checkpoint((int) time, next, log.segments, engine.copy(null)));
+        }
+        engine.finish();
+        baseline = result(table, rows, log, engine);
+    }
+
+    private Engine start(SchedulerListener listener) {
+        if (policy.equals("ag")) return new AGEngine(new OnlineAGScheduler(listener));
+        return new PriorityEngine(new OnlinePriorityScheduling(contextSwitch, agingInterval, listener));
+    }
+
+    public int checkpoints() {
+        return checkpoints.size();
+    }
+
+    /*
+     * Earliest arrival at which the modified workload differs from the
+     * baseline, comparing both in arrival order; Integer.MAX_VALUE if the
+     * two are the same.
+     */
+    public int divergence(ProcessView modified) {
+        return divergence(modified, modified.arrivalOrder());
+    }
+
+    private int divergence(ProcessView modified, int[] order) {
+        int common = Math.min(rows.length, order.length);
+        for (int i = 0; i < common; i++) {
+            int a = rows[i];
+            int b = order[i];
+            if (table.arrival(a) != modified.arrival(b) || table.burst(a) != modified.burst(b)
+                    || table.priority(a) != modified.priority(b) || !table.name(a).equals(modified.name(b))
+                    || (policy.equals("ag") && table.quantum(a) != modified.quantum(b))) {
+                return Math.min(table.arrival(a), modified.arrival(b));
+            }
+        }
+        if (common < rows.length) return table.arrival(rows[common]);
+        if (common < order.length) return modified.arrival(order[common]);
+        return Integer.MAX_VALUE;
+    }
+
+    // Runs the modified workload, resuming from the latest checkpoint before it diverges from the baseline
+    public RunResult query(ProcessView modified) {
+        int[] order = modified.arrivalOrder();
+        int diverges = divergence(modified, order);
+        int lo = 0;
+        int hi = checkpoints.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (checkpoints.get(mid).time < diverges) lo = mid;
+            else hi = mid - 1;
+        }
+        Checkpoint checkpoint = checkpoints.get(lo);
+        resumedAt = checkpoint.time;
+
+        Log resumed = new Log(log, checkpoint.segments, order.length);
+        Engine engine = checkpoint.engine.copy(resumed);
+        for (int i = checkpoint.submitted; i < order.length; i++) engine.submit(modified, order[i]);
+        engine.finish();
+        return result(modified, order, resumed, engine);
+    }
+
+    private RunResult result(ProcessView table, int[] rows, Log log, Engine engine) {
+        Timeline timeline = new Timeline(table);
+        for (int s = 0; s < log.segments; s++) {
+            timeline.open(rows[log.segmentId[s]], log.segmentStart[s]);
+            timeline.extend(log.segmentEnd[s]);
+        }
+        int[] finish = new int[rows.length];
+        for (int id = 0; id < rows.length; id++) finish[rows[id]] = log.finish[id];
+
+        RunResult result = new RunResult(table, timeline, finish);
+        if (policy.equals("ag")) {
+            result.quantumHistory = new QuantumHistory(rows.length);
+            for (int id = 0; id < rows.length; id++) {
+                for (int q : log.history[id]) result.quantumHistory.append(rows[id], q);
+            }
+        }
+        result.metrics = engine.metrics();
+        result.latency = engine.latency();
+        return result;
+    }
+
+    // A copy of table with one query applied, or null if the query names no process
+    static ProcessView apply(ProcessView table, String[] query) {
+        ProcessTable modified = new ProcessTable(table.size() + 1);
+        boolean found = query[0].equals("add");
+        for (int row = 0; row < table.size(); row++) {
+            int arrival = table.arrival(row);
+            int burst = table.burst(row);
+            int priority = table.priority(row);
+            if (!found && table.name(row).equals(query[1])) {
+                found = true;
+                switch (query[0]) {
+                    case "arrive":
+                        arrival = Integer.parseInt(query[2]);
+                        break;
+                    case "burst":
+                        burst = Integer.parseInt(query[2]);
+                        break;
+                    case "priority":
+                        priority = Integer.parseInt(query[2]);
+                        break;
+                    case "remove":
+                        continue;
+                    default:
+                        throw new IllegalArgumentException("Unknown query " + query[0]);
+                }
+            }
+            modified.add(table.name(row), arrival, burst, priority, table.quantum(row));
+        }
+        if (query[0].equals("add")) {
+            modified.add(query[1], Integer.parseInt(query[2]), Integer.parseInt(query[3]), Integer.parseInt(query[4]),
+                    Integer.parseInt(query[5]));
+        }
+        return found ? modified : null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java WhatIfAnalysis <workload.json|.bin> [--policy priority|ag] [--interval n]");
+            System.exit(1);
+        }
+        String policy = "priority";
+        int interval = 1000;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--policy":
+                    policy = args[i + 1];
+                    break;
+                case "--interval":
+                    interval = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        Workload workload = WorkloadLoader.load(args[0]);
+
+        long start = System.nanoTime();
+        WhatIfAnalysis analysis = policy.equals("ag")
+                ? ag(workload.processes, interval)
+                : priority(workload.processes, workload.contextSwitch, workload.agingInterval, interval);
+        RunResult base = analysis.baseline;
+        System.out.printf("Baseline: %d processes, %d checkpoints in %.2f s; avg wait %.2f, avg tat %.2f%n",
+                base.table.size(), analysis.checkpoints(), (System.nanoTime() - start) / 1e9,
+                base.averageWaitingTime, base.averageTurnaroundTime);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] query = line.trim().split("\\s+");
+            if (query[0].isEmpty()) continue;
+            ProcessView modified;
+            try {
+                modified = apply(workload.processes, query);
+            } catch (RuntimeException e) {
+                System.out.println("Bad query: " + line);
+                continue;
+            }
+            if (modified == null) {
+                System.out.println("No process named " + query[1]);
+                continue;
+            }
+            start = System.nanoTime();
+            RunResult r = analysis.query(modified);
+            System.out.printf("%s: avg wait %.2f (%+.2f), avg tat %.2f (%+.2f); resumed at t=%d in %.1f ms%n",
+                    line.trim(), r.averageWaitingTime, r.averageWaitingTime - base.averageWaitingTime,
+                    r.averageTurnaroundTime, r.averageTurnaroundTime - base.averageTurnaroundTime,
+                    analysis.resumedAt, (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
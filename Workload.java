@@ -0,0 +1,14 @@
+import com.google.gson.JsonObject;
+
+/*
+ * One workload file: the processes plus the scheduler settings and,
+ * for test cases, the expected output.
+ */
+class Workload {
+    String name;
+    ProcessView processes;
+    int contextSwitch;
+    int rrQuantum;
+    int agingInterval;
+    JsonObject expectedOutput;
+}
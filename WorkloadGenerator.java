@@ -0,0 +1,192 @@
+import java.util.*;
+
+/*
+ * Seeded synthetic workloads, produced one process at a time.
+ * The same seed and settings always give the same processes, in arrival
+ * order. generate() pushes them into a WorkloadLoader.ProcessSink as they
+ * are drawn, so a run can be as long as wanted without the workload ever
+ * being held in memory; table() collects them for the batch schedulers.
+ *
+ * Arrivals:  uniform   gaps drawn evenly from [0, 2 * mean gap]
+ *            poisson   exponential gaps
+ *            bursty    batches of processes arriving together, geometric
+ *                      batch sizes with exponential gaps between batches
+ * Bursts:    uniform, pareto or lognormal, all with mean meanBurst
+ * The mean gap is meanBurst / utilization, so the offered load is utilization.
+ *
+ * Usage: java WorkloadGenerator <count> [priority|ag] [seed]
+ *   streams count processes through the online scheduler and prints totals
+ */
+public class WorkloadGenerator {
+
+    public long count = 1000;
+    public String arrivals = "poisson";
+    public String bursts = "pareto";
+    public double utilization = 0.9;
+    public double meanBurst = 10;
+    public int maxBurst = 1_000_000;
+    // Above 1, or the Pareto mean is infinite
+    public double paretoShape = 1.5;
+    public double lognormalSigma = 1.0;
+    // Mean number of processes per batch for bursty arrivals
+    public double batchSize = 8;
+    public int minPriority = 1;
+    public int maxPriority = 10;
+    public int minQuantum = 2;
+    public int maxQuantum = 8;
+
+    private final long seed;
+
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public WorkloadGenerator(long seed, long count) {
+        this(seed);
+        this.count = count;
+    }
+
+    // Streams every process to the sink in arrival order
+    public void generate(WorkloadLoader.ProcessSink sink) {
+        if (bursts.equals("pareto") && !(paretoShape > 1)) {
+            throw new IllegalArgumentException("Pareto shape must be above 1, got " + paretoShape);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        double meanGap = meanBurst / utilization;
+        double clock = 0;
+        long batchLeft = 0;
+
+        for (long i = 0; i < count; i++) {
+            switch (arrivals) {
+                case "uniform":
+                    clock += random.nextDouble() * 2 * meanGap;
+                    break;
+                case "poisson":
+                    clock += exponential(random, meanGap);
+                    break;
+                case "bursty":
+                    if (batchLeft == 0) {
+                        clock += exponential(random, meanGap * batchSize);
+                        batchLeft = geometric(random, batchSize);
+                    }
+                    batchLeft--;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown arrival distribution " + arrivals);
+            }
+            if (clock > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Arrival times past " + Integer.MAX_VALUE + " after " + i + " processes");
+            }
+
+            sink.accept("P" + (i + 1), (int) clock, burst(random),
+                    between(random, minPriority, maxPriority),
+                    between(random, minQuantum, maxQuantum));
+        }
+    }
+
+    // Draws the whole workload into a table
+    public ProcessTable table() {
+        ProcessTable table = new ProcessTable((int) Math.min(count, 1 << 20));
+        generate(table::add);
+        return table;
+    }
+
+    private int burst(SplittableRandom random) {
+        double burst;
+        switch (bursts) {
+            case "uniform":
+                burst = 1 + random.nextDouble() * (2 * meanBurst - 2);
+                break;
+            case "pareto": {
+                double scale = meanBurst * (paretoShape - 1) / paretoShape;
+                burst = scale / Math.pow(1 - random.nextDouble(), 1 / paretoShape);
+                break;
+            }
+            case "lognormal": {
+                double mu = Math.log(meanBurst) - lognormalSigma * lognormalSigma / 2;
+                burst = Math.exp(mu + lognormalSigma * gaussian(random));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown burst distribution " + bursts);
+        }
+        // At least 1, also for a draw that came out NaN
+        return (int) Math.max(1, Math.min(maxBurst, Math.round(burst)));
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    // At least 1, with the given mean
+    private static long geometric(SplittableRandom random, double mean) {
+        if (mean <= 1) return 1;
+        return 1 + (long) (Math.log(1 - random.nextDouble()) / Math.log(1 - 1 / mean));
+    }
+
+    // Box-Muller, one value per call
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static int between(SplittableRandom random, int min, int max) {
+        return min + random.nextInt(max - min + 1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java WorkloadGenerator <count> [priority|ag] [seed]");
+            System.exit(1);
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(args.length > 2 ? Long.parseLong(args[2]) : 42,
+                Long.parseLong(args[0]));
+        String policy = args.length > 1 ? args[1] : "priority";
+
+        // The engines' histograms are all that is kept, nothing per process
+        SchedulerListener listener = new SchedulerListener() {
+            @Override
+            public void dispatched(int id, int start, int end) {
+            }
+
+            @Override
+            public void completed(int id, int arrival, int burst, int finishTime, int[] quantumHistory) {
+            }
+        };
+        LatencyStats latency;
+
+        long start = System.nanoTime();
+        int[] lastArrival = {-1};
+        if (policy.equals("ag")) {
+            OnlineAGScheduler engine = new OnlineAGScheduler(listener);
+            generator.generate((name, arrival, burst, priority, quantum) -> {
+                // Everything up to the previous arrival time has been submitted
+                if (arrival > lastArrival[0]) {
+                    engine.advanceTo(arrival - 1);
+                    lastArrival[0] = arrival;
+                }
+                engine.submit(name, arrival, burst, priority, quantum);
+            });
+            engine.finish();
+            latency = engine.latency;
+        } else {
+            OnlinePriorityScheduling engine = new OnlinePriorityScheduling(1, 5, listener);
+            generator.generate((name, arrival, burst, priority, quantum) -> {
+                if (arrival > lastArrival[0]) {
+                    engine.advanceTo(arrival - 1);
+                    lastArrival[0] = arrival;
+                }
+                engine.submit(name, arrival, burst, priority);
+            });
+            engine.finish();
+            latency = engine.latency;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long completed = latency.turnaround.count();
+        if (completed == 0) return;
+
+        System.out.printf("Processes: %d in %.1f s (%.0f/s)%n", completed, seconds, completed / seconds);
+        System.out.printf("Average Waiting Time: %.2f%n", latency.waiting.mean());
+        System.out.printf("Average Turnaround Time: %.2f%n", latency.turnaround.mean());
+        System.out.println(latency);
+    }
+}
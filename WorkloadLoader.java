@@ -0,0 +1,135 @@
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/*
+ * Streaming workload reader built on Gson's JsonReader.
+ * Process records are handed to a sink one at a time as they are parsed,
+ * so only the destination (normally a ProcessTable) grows with the file.
+ * Accepts the test case layout
+ *   {"input": {"contextSwitch": .., "processes": [..]}, "expectedOutput": {..}}
+ * as well as a bare array of processes. Files in the BinaryWorkload
+ * format are recognised by their magic number and mapped directly.
+ */
+class WorkloadLoader {
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    interface ProcessSink {
+        void accept(String name, int arrival, int burst, int priority, int quantum);
+    }
+
+    // Reads the whole file into a Workload backed by a ProcessTable; binary workloads are mapped instead
+    static Workload load(String path) throws IOException {
+        if (BinaryWorkload.isBinary(Paths.get(path))) return BinaryWorkload.open(Paths.get(path));
+        ProcessTable table = new ProcessTable();
+        Workload workload = read(path, table::add);
+        workload.processes = table;
+        return workload;
+    }
+
+    // Streams every process to the sink; the returned Workload has no process table
+    static Workload read(String path, ProcessSink sink) throws IOException {
+        Workload workload = new Workload();
+        try (JsonReader reader = open(path)) {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readProcesses(reader, sink);
+                return workload;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        workload.name = reader.nextString();
+                        break;
+                    case "input":
+                        readInput(reader, workload, sink);
+                        break;
+                    case "processes":
+                        readProcesses(reader, sink);
+                        break;
+                    case "expectedOutput":
+                        // Expected results are small, a tree is fine here
+                        workload.expectedOutput = JsonParser.parseReader(reader).getAsJsonObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return workload;
+    }
+
+    private static JsonReader open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path));
+        return new JsonReader(new BufferedReader(
+                Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE), BUFFER_SIZE));
+    }
+
+    private static void readInput(JsonReader reader, Workload workload, ProcessSink sink) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "contextSwitch":
+                    workload.contextSwitch = reader.nextInt();
+                    break;
+                case "rrQuantum":
+                    workload.rrQuantum = reader.nextInt();
+                    break;
+                case "agingInterval":
+                    workload.agingInterval = reader.nextInt();
+                    break;
+                case "processes":
+                    readProcesses(reader, sink);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readProcesses(JsonReader reader, ProcessSink sink) throws IOException {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            int arrival = 0, burst = 0, priority = 0, quantum = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "arrival":
+                        arrival = reader.nextInt();
+                        break;
+                    case "burst":
+                        burst = reader.nextInt();
+                        break;
+                    case "priority":
+                        priority = reader.nextInt();
+                        break;
+                    case "quantum":
+                        quantum = reader.nextInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            count++;
+            sink.accept(name != null ? name : "P" + count, arrival, burst, priority, quantum);
+        }
+        reader.endArray();
+    }
+}
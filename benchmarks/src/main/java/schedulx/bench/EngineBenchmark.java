@@ -0,0 +1,76 @@
+package schedulx.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * One schedule call of an engine's public list-based entry point, on the
+ * seeded synthetic workloads of the Benchmark class: sizes 1e2 to 1e6 and
+ * uniform, bursty and heavy-tailed distributions. Throughput is ops/s of
+ * whole schedule calls; run with -prof gc for the allocation rate and
+ * bytes per call. A quadratic engine shows up as time per call growing
+ * 100-fold for every 10-fold step in size.
+ *
+ * The entry points sort and update their input, so every call copies the
+ * workload first. The copy is timed with it rather than done in a
+ * per-invocation setup, whose overhead would swamp the microsecond calls
+ * at the small sizes; the input benchmark times the copy alone, so the
+ * engine's share is the difference.
+ *
+ * Usage: java -jar benchmarks/target/benchmarks.jar EngineBenchmark -prof gc [-p size=1000,100000]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({"rr", "sjf", "priority", "ag"})
+    public String engine;
+
+    @Param({"uniform", "bursty", "heavy"})
+    public String dist;
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Supplier<Object> schedule;
+    private Supplier<Object> input;
+
+    @Setup
+    public void workload() throws ReflectiveOperationException {
+        schedule = prepare("prepare");
+        input = prepare("prepareInput");
+    }
+
+    // The engines live in the default package, which a named package can only reach reflectively
+    @SuppressWarnings("unchecked")
+    private Supplier<Object> prepare(String method) throws ReflectiveOperationException {
+        return (Supplier<Object>) Class.forName("Benchmark")
+                .getMethod(method, String.class, String.class, int.class)
+                .invoke(null, engine, dist, size);
+    }
+
+    @Benchmark
+    public Object schedule() {
+        return schedule.get();
+    }
+
+    @Benchmark
+    public Object input() {
+        return input.get();
+    }
+}